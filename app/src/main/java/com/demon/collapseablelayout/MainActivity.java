@@ -1,21 +1,17 @@
 package com.demon.collapseablelayout;
 
 import android.os.Bundle;
-import android.support.v4.view.ViewCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.Pair;
-import android.view.View;
 
 import com.demon.library.CollapseableLayout;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements CollapseableLayout.IOnFlingListener, CollapseableLayout.IOnOffsetChangedListener {
-
-    private View headerContent;
+public class MainActivity extends AppCompatActivity implements CollapseableLayout.IOnFlingListener {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -25,10 +21,7 @@ public class MainActivity extends AppCompatActivity implements CollapseableLayou
         initRecyclerView();
 
         CollapseableLayout layout = (CollapseableLayout) findViewById(R.id.collapseablelayout);
-        layout.addOnOffsetChangedListener(this);
         layout.addOnFlingListener(this);
-
-        headerContent = findViewById(R.id.header_content);
     }
 
     private void initRecyclerView() {
@@ -51,16 +44,4 @@ public class MainActivity extends AppCompatActivity implements CollapseableLayou
     public void onFling(float velocityY) {
 
     }
-
-    @Override
-    public void onOffsetChanged(int verticalOffset, int maxOffset) {
-        float alpha = ((float) maxOffset / 3 - verticalOffset) * 3 / maxOffset;
-        if (alpha < 0) {
-            alpha = 0;
-        } else if (alpha > 1) {
-            alpha = 1;
-        }
-        headerContent.setAlpha(alpha);
-        ViewCompat.setTranslationY(headerContent, verticalOffset * 0.5f);
-    }
 }
@@ -0,0 +1,73 @@
+package com.demon.library.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用随机生成的拖动序列驱动 {@link CollapseOffsetModel},统计每次拖动事件的耗时。
+ * 运行: ./gradlew :core:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollapseOffsetModelBenchmark {
+
+    private static final int EVENT_COUNT = 1 << 16;
+    private static final int EVENTS_PER_GESTURE = 32;
+
+    private final CollapseOffsetModel mModel = new CollapseOffsetModel();
+    private final int[] mDragDeltas = new int[EVENT_COUNT];
+    private final float[] mReleaseVelocities = new float[EVENT_COUNT / EVENTS_PER_GESTURE];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        for (int i = 0; i < mDragDeltas.length; i++) {
+            mDragDeltas[i] = random.nextInt(121) - 60;
+        }
+        for (int i = 0; i < mReleaseVelocities.length; i++) {
+            mReleaseVelocities[i] = random.nextFloat() * 8000 - 4000;
+        }
+        mModel.setScrollRange(900);
+    }
+
+    /**
+     * 每个手势包含若干拖动事件,松手时计算伸缩目标并跳到目标位置
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public int dragAndSettle() {
+        final CollapseOffsetModel model = mModel;
+        final int[] deltas = mDragDeltas;
+        int consumed = 0;
+        for (int i = 0; i < deltas.length; i++) {
+            consumed += model.scrollBy(deltas[i]);
+            if ((i + 1) % EVENTS_PER_GESTURE == 0 && !model.isSettled()) {
+                model.setOffset(model.snapTargetForVelocity(mReleaseVelocities[i / EVENTS_PER_GESTURE]));
+            }
+        }
+        return consumed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public float dragWithFraction() {
+        final CollapseOffsetModel model = mModel;
+        final int[] deltas = mDragDeltas;
+        float sum = 0;
+        for (int i = 0; i < deltas.length; i++) {
+            model.scrollBy(deltas[i]);
+            sum += model.getCollapseFraction();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,315 @@
+package com.demon.library.core;
+
+import java.util.Arrays;
+
+/**
+ * 折叠偏移量模型:纯Java实现,只使用基本类型,不依赖任何Android平台类。
+ * 负责偏移量的截断、边界判断以及松手后伸缩方向的决策。
+ * <p>
+ * offset 表示header相对于完全展开状态的偏移,取值范围 [-scrollRange, 0]:
+ * 0 表示完全展开, -scrollRange 表示完全折叠。
+ * <p>
+ * 折叠过程可以分为多个阶段(stage),每个阶段对应一个header区块,按顺序依次折叠。
+ * 每个阶段可以单独设置松手后是否自动伸缩到阶段的边界。
+ * 此外还可以设置任意的中间停靠点(anchor),例如半展开状态,停靠点把所在的阶段再分成多段。
+ * <p>
+ * author: demon.zhang
+ */
+public final class CollapseOffsetModel {
+
+    private static final int[] EMPTY_STAGES = new int[0];
+
+    /**
+     * 伸缩动画的最短时间,保证很短的距离也能在几帧内完成
+     */
+    public static final int MIN_SETTLE_DURATION = 48;
+
+    private int mOffset;
+    private int mScrollRange;
+
+    /**
+     * 每个阶段结束时的累计折叠距离,最后一个值等于 scrollRange
+     */
+    private int[] mStageEnds = EMPTY_STAGES;
+    private boolean[] mStageSnap = new boolean[0];
+
+    /**
+     * 中间停靠点,取值为折叠比例(0, 1),升序排列
+     */
+    private float[] mAnchors = new float[0];
+
+    /**
+     * findSegment的结果:当前偏移量所在段的起止折叠距离
+     */
+    private int mSegmentStart;
+    private int mSegmentEnd;
+
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * 可以折叠的最大距离
+     */
+    public int getScrollRange() {
+        return mScrollRange;
+    }
+
+    /**
+     * 更新可以折叠的最大距离,当前偏移量超出新的范围时会被截断
+     *
+     * @return 截断导致的偏移量变化
+     */
+    public int setScrollRange(int scrollRange) {
+        ensureStageCapacity(1);
+        mStageEnds[0] = scrollRange < 0 ? 0 : scrollRange;
+        mStageSnap[0] = true;
+        mScrollRange = mStageEnds[0];
+        return setOffset(mOffset);
+    }
+
+    /**
+     * 设置多阶段折叠,折叠范围为所有阶段之和。数组长度不变时复用内部数组,不产生新对象。
+     *
+     * @param stageRanges 每个阶段可以折叠的距离
+     * @param stageSnap   每个阶段松手后是否自动伸缩到阶段边界
+     * @return 截断导致的偏移量变化
+     */
+    public int setStages(int[] stageRanges, boolean[] stageSnap) {
+        final int count = stageRanges.length;
+        ensureStageCapacity(count);
+        int end = 0;
+        for (int i = 0; i < count; i++) {
+            end += stageRanges[i] < 0 ? 0 : stageRanges[i];
+            mStageEnds[i] = end;
+            mStageSnap[i] = stageSnap[i];
+        }
+        mScrollRange = end;
+        return setOffset(mOffset);
+    }
+
+    public int getStageCount() {
+        return mStageEnds.length;
+    }
+
+    /**
+     * 某个阶段对应的header区块的偏移量:该阶段折叠完成以后不再移动
+     */
+    public int getStageOffset(int stage) {
+        return getStageOffsetAt(stage, mOffset);
+    }
+
+    /**
+     * 整体偏移量为offset时,某个阶段对应的header区块的偏移量
+     */
+    public int getStageOffsetAt(int stage, int offset) {
+        final int end = mStageEnds[stage];
+        return -offset < end ? offset : -end;
+    }
+
+    /**
+     * 某个阶段对应的header区块自身的移动进度, 0: 未移动, 1: 该区块已经停止移动
+     */
+    public float getStageFraction(int stage) {
+        return getStageFractionAt(stage, mOffset);
+    }
+
+    public float getStageFractionAt(int stage, int offset) {
+        final int end = mStageEnds[stage];
+        return end > 0 ? (float) -getStageOffsetAt(stage, offset) / end : 0;
+    }
+
+    /**
+     * 当前偏移量和目标偏移量是否处于同一个阶段(包括阶段的边界):
+     * 此时所有仍在移动的区块和content的位移完全相同,可以作为一个整体做平移动画
+     */
+    public boolean isWithinStage(int targetOffset) {
+        final int from = Math.min(-mOffset, -targetOffset);
+        final int to = Math.max(-mOffset, -targetOffset);
+        for (int i = 0; i < mStageEnds.length; i++) {
+            if (from >= stageStart(i) && to <= mStageEnds[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 直接设置偏移量,超出范围时截断
+     *
+     * @return 偏移量的变化
+     */
+    public int setOffset(int offset) {
+        final int clamped = clamp(offset);
+        final int delta = clamped - mOffset;
+        mOffset = clamped;
+        return delta;
+    }
+
+    /**
+     * @param dy dy < 0 : 上推折叠, 反之下拉展开
+     * @return 实际滑动的距离
+     */
+    public int scrollBy(int dy) {
+        return setOffset(mOffset + dy);
+    }
+
+    public boolean isExpanded() {
+        return mOffset >= 0;
+    }
+
+    public boolean isCollapsed() {
+        return -mOffset >= mScrollRange;
+    }
+
+    /**
+     * 是否处于静止状态:阶段的边界上,或者处于不自动伸缩的阶段内
+     */
+    public boolean isSettled() {
+        return !findSegment();
+    }
+
+    /**
+     * 折叠比例, 0: 完全展开, 1: 完全折叠
+     */
+    public float getCollapseFraction() {
+        return mScrollRange > 0 ? (float) -mOffset / mScrollRange : 0;
+    }
+
+    /**
+     * 松手后应该伸缩到的位置:在当前阶段内,折叠距离小于 阶段范围 * factor 时展开到阶段起点,否则折叠到阶段终点。
+     * 当前阶段不自动伸缩或者已经在阶段边界上时,保持当前位置。
+     *
+     * @return 目标偏移量
+     */
+    public int snapTarget(float factor) {
+        if (!findSegment()) {
+            return mOffset;
+        }
+        final int start = mSegmentStart;
+        final int end = mSegmentEnd;
+        return -mOffset - start < (end - start) * factor ? -start : -end;
+    }
+
+    /**
+     * 惯性滑动停止后按照滑动方向伸缩到当前阶段的边界
+     *
+     * @param expand true: 展开方向, false: 折叠方向
+     * @return 目标偏移量
+     */
+    public int snapTargetInDirection(boolean expand) {
+        if (!findSegment()) {
+            return mOffset;
+        }
+        return expand ? -mSegmentStart : -mSegmentEnd;
+    }
+
+    /**
+     * 设置中间停靠点
+     *
+     * @param anchors 折叠比例(0, 1),超出范围的值会被忽略
+     */
+    public void setAnchors(float[] anchors) {
+        final float[] sorted = anchors.clone();
+        Arrays.sort(sorted);
+        mAnchors = sorted;
+    }
+
+    /**
+     * 伸缩动画的时长:有速度时按照速度计算,否则按照距离占折叠范围的比例计算,
+     * 结果限制在 [MIN_SETTLE_DURATION, maxDuration] 之间
+     *
+     * @param distance    需要移动的距离
+     * @param velocity    松手时的速度,单位px/s
+     * @param maxDuration 移动整个折叠范围所需的时间
+     */
+    public int computeSettleDuration(int distance, float velocity, int maxDuration) {
+        final int absDistance = Math.abs(distance);
+        final float absVelocity = Math.abs(velocity);
+        int duration;
+        if (absVelocity > 0) {
+            // 按照松手速度匀速移动所需时间的3倍,留给减速插值器
+            duration = Math.round(3000 * absDistance / absVelocity);
+        } else {
+            duration = mScrollRange > 0 ? maxDuration * absDistance / mScrollRange : maxDuration;
+        }
+        return Math.max(MIN_SETTLE_DURATION, Math.min(duration, maxDuration));
+    }
+
+    /**
+     * 低速松手时的伸缩位置:下滑更倾向于展开,上滑更倾向于折叠
+     *
+     * @param velocityY velocityY < 0 : 上滑 , 反之下滑
+     * @return 目标偏移量
+     */
+    public int snapTargetForVelocity(float velocityY) {
+        return snapTarget(velocityY > 0 ? 0.75f : 0.25f);
+    }
+
+    /**
+     * 查找当前偏移量所在的、需要自动伸缩的段:阶段被停靠点再分成多段
+     *
+     * @return false: 在段的边界上或者所在阶段不自动伸缩
+     */
+    private boolean findSegment() {
+        final int stage = findStage();
+        if (stage < 0) {
+            return false;
+        }
+        final int distance = -mOffset;
+        int start = stageStart(stage);
+        int end = mStageEnds[stage];
+        for (float anchor : mAnchors) {
+            final int anchorDistance = Math.round(anchor * mScrollRange);
+            if (anchorDistance <= start || anchorDistance >= end) {
+                continue;
+            }
+            if (anchorDistance == distance) {
+                return false;
+            }
+            if (anchorDistance < distance) {
+                start = anchorDistance;
+            } else {
+                end = anchorDistance;
+                break;
+            }
+        }
+        mSegmentStart = start;
+        mSegmentEnd = end;
+        return true;
+    }
+
+    /**
+     * @return 当前偏移量所在的、需要自动伸缩的阶段;在阶段边界上或者阶段不自动伸缩时返回-1
+     */
+    private int findStage() {
+        final int distance = -mOffset;
+        for (int i = 0; i < mStageEnds.length; i++) {
+            if (distance < mStageEnds[i]) {
+                return distance > stageStart(i) && mStageSnap[i] ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    private int stageStart(int stage) {
+        return stage == 0 ? 0 : mStageEnds[stage - 1];
+    }
+
+    private void ensureStageCapacity(int count) {
+        if (mStageEnds.length != count) {
+            mStageEnds = new int[count];
+            mStageSnap = new boolean[count];
+        }
+    }
+
+    private int clamp(int offset) {
+        if (offset > 0) {
+            return 0;
+        }
+        if (offset < -mScrollRange) {
+            return -mScrollRange;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,73 @@
+package com.demon.library.core;
+
+/**
+ * 伸缩动画的计算引擎:按照减速曲线从起点移动到终点,只保存基本类型,反复启动不会产生任何对象。
+ * 由调用方在每一帧传入当前时间驱动,时间单位为毫秒。
+ * <p>
+ * author: demon.zhang
+ */
+public final class OffsetSettler {
+
+    private int mStartOffset;
+    private int mDistance;
+    private int mDuration;
+    private long mStartTime;
+    private int mCurrOffset;
+    private boolean mFinished = true;
+
+    /**
+     * @param startOffset 起始偏移量
+     * @param distance    需要移动的距离
+     * @param duration    动画时长
+     * @param startTime   开始时间
+     */
+    public void start(int startOffset, int distance, int duration, long startTime) {
+        mStartOffset = startOffset;
+        mDistance = distance;
+        mDuration = duration;
+        mStartTime = startTime;
+        mCurrOffset = startOffset;
+        mFinished = distance == 0;
+    }
+
+    /**
+     * 计算当前时间对应的偏移量,结果通过 {@link #getCurrOffset()} 获取
+     *
+     * @return false: 动画已经结束
+     */
+    public boolean computeOffset(long currentTime) {
+        if (mFinished) {
+            return false;
+        }
+        final long elapsed = currentTime - mStartTime;
+        if (elapsed >= mDuration) {
+            mCurrOffset = mStartOffset + mDistance;
+            mFinished = true;
+            return true;
+        }
+        final float input = elapsed <= 0 ? 0 : (float) elapsed / mDuration;
+        // 与DecelerateInterpolator(1.0f)相同的曲线
+        final float fraction = 1f - (1f - input) * (1f - input);
+        mCurrOffset = mStartOffset + Math.round(mDistance * fraction);
+        return true;
+    }
+
+    public int getCurrOffset() {
+        return mCurrOffset;
+    }
+
+    /**
+     * 动画的终点
+     */
+    public int getFinalOffset() {
+        return mStartOffset + mDistance;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void abort() {
+        mFinished = true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.demon.library.core;
+
+/**
+ * 完全展开以后继续下拉的越界区域:手指移动的距离按照橡皮筋曲线换算成越界距离,
+ * 越拉阻力越大,越界距离无限接近但不会超过最大距离。换算是可逆的,手指原路推回时越界区域原路收回。
+ * <p>
+ * offset 取值范围 [0, maxDistance),0 表示没有越界。
+ * <p>
+ * author: demon.zhang
+ */
+public final class OverscrollModel {
+
+    public static final float DEFAULT_RESISTANCE = 0.55f;
+
+    private int mMaxDistance;
+    private float mResistance = DEFAULT_RESISTANCE;
+
+    /**
+     * 进入越界区域以后手指累计移动的距离
+     */
+    private int mPull;
+    private int mOffset;
+
+    /**
+     * @param maxDistance 越界距离的上限, 0: 关闭越界
+     */
+    public void setMaxDistance(int maxDistance) {
+        mMaxDistance = Math.max(0, maxDistance);
+        if (mMaxDistance == 0) {
+            mPull = 0;
+            mOffset = 0;
+        } else {
+            setOffset(mOffset);
+        }
+    }
+
+    public int getMaxDistance() {
+        return mMaxDistance;
+    }
+
+    /**
+     * @param resistance 刚进入越界区域时越界距离与手指距离的比例,越小阻力越大,取值 (0, 1]
+     */
+    public void setResistance(float resistance) {
+        if (resistance <= 0 || resistance > 1) {
+            throw new IllegalArgumentException("resistance must be in (0, 1]: " + resistance);
+        }
+        mResistance = resistance;
+        mPull = toPull(mOffset);
+    }
+
+    public boolean isEnabled() {
+        return mMaxDistance > 0;
+    }
+
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @param dy 手指移动的距离, dy > 0: 下拉
+     * @return 消耗的手指距离,越界区域收回到0以后剩余的上推距离不会消耗
+     */
+    public int pullBy(int dy) {
+        if (mMaxDistance == 0) {
+            return 0;
+        }
+        final int pull = Math.max(0, mPull + dy);
+        final int consumed = pull - mPull;
+        mPull = pull;
+        mOffset = toOffset(pull);
+        return consumed;
+    }
+
+    /**
+     * 直接设置越界距离,用于回弹动画
+     *
+     * @return 越界距离的变化量
+     */
+    public int setOffset(int offset) {
+        final int old = mOffset;
+        mOffset = Math.max(0, Math.min(offset, mMaxDistance - 1));
+        mPull = toPull(mOffset);
+        return mOffset - old;
+    }
+
+    /**
+     * offset = d * (1 - 1 / (pull * c / d + 1))
+     */
+    private int toOffset(int pull) {
+        final float d = mMaxDistance;
+        return Math.min(mMaxDistance - 1, Math.round(d * (1f - 1f / (pull * mResistance / d + 1f))));
+    }
+
+    private int toPull(int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        final float d = mMaxDistance;
+        return Math.round(d / mResistance * (1f / (1f - offset / d) - 1f));
+    }
+}
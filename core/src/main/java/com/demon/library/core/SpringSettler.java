@@ -0,0 +1,97 @@
+package com.demon.library.core;
+
+/**
+ * 越界区域回弹动画的计算引擎:临界阻尼弹簧,没有过冲,按照解析解计算,结果与帧率无关。
+ * 与 {@link OffsetSettler} 一样只保存基本类型,由调用方在每一帧传入当前时间(毫秒)驱动。
+ * <p>
+ * 相对终点的位移 x(t) = (x0 + (v0 + w * x0) * t) * e^(-w * t), w = sqrt(stiffness)
+ * <p>
+ * author: demon.zhang
+ */
+public final class SpringSettler {
+
+    public static final float DEFAULT_STIFFNESS = 400f;
+
+    /**
+     * 位移和速度都小于阈值时认为已经静止
+     */
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 20f;
+
+    private float mOmega = (float) Math.sqrt(DEFAULT_STIFFNESS);
+
+    private int mFinalOffset;
+    private float mStartDistance;
+    private float mStartVelocity;
+    private long mStartTime;
+    private int mCurrOffset;
+    private boolean mFinished = true;
+
+    /**
+     * @param stiffness 弹簧刚度,越大回弹越快
+     */
+    public void setStiffness(float stiffness) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("stiffness must be positive: " + stiffness);
+        }
+        mOmega = (float) Math.sqrt(stiffness);
+    }
+
+    /**
+     * @param startOffset 起始偏移量
+     * @param finalOffset 终点
+     * @param velocity    起始速度,单位 px/s
+     * @param startTime   开始时间
+     */
+    public void start(int startOffset, int finalOffset, float velocity, long startTime) {
+        mFinalOffset = finalOffset;
+        mStartDistance = startOffset - finalOffset;
+        mStartVelocity = velocity;
+        mStartTime = startTime;
+        mCurrOffset = startOffset;
+        mFinished = startOffset == finalOffset && velocity == 0;
+    }
+
+    /**
+     * 计算当前时间对应的偏移量,结果通过 {@link #getCurrOffset()} 获取
+     *
+     * @return false: 动画已经结束
+     */
+    public boolean computeOffset(long currentTime) {
+        if (mFinished) {
+            return false;
+        }
+        final float t = Math.max(0, currentTime - mStartTime) / 1000f;
+        final float w = mOmega;
+        final float b = mStartVelocity + w * mStartDistance;
+        final float decay = (float) Math.exp(-w * t);
+        final float distance = (mStartDistance + b * t) * decay;
+        final float velocity = (b - w * (mStartDistance + b * t)) * decay;
+        if (Math.abs(distance) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY) {
+            mCurrOffset = mFinalOffset;
+            mFinished = true;
+            return true;
+        }
+        mCurrOffset = mFinalOffset + Math.round(distance);
+        return true;
+    }
+
+    public int getCurrOffset() {
+        return mCurrOffset;
+    }
+
+    /**
+     * 动画的终点
+     */
+    public int getFinalOffset() {
+        return mFinalOffset;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void abort() {
+        mFinished = true;
+    }
+}
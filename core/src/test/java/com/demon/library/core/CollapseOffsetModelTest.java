@@ -0,0 +1,105 @@
+package com.demon.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollapseOffsetModelTest {
+
+    @Test
+    public void scrollBy_clampsToRange() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setScrollRange(300);
+
+        assertEquals(0, model.scrollBy(50));
+        assertTrue(model.isExpanded());
+
+        assertEquals(-200, model.scrollBy(-200));
+        assertEquals(-100, model.scrollBy(-250));
+        assertEquals(-300, model.getOffset());
+        assertTrue(model.isCollapsed());
+
+        assertEquals(300, model.scrollBy(1000));
+        assertEquals(0, model.getOffset());
+    }
+
+    @Test
+    public void setScrollRange_reclampsOffset() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setScrollRange(300);
+        model.scrollBy(-250);
+
+        assertEquals(50, model.setScrollRange(200));
+        assertEquals(-200, model.getOffset());
+        assertTrue(model.isCollapsed());
+    }
+
+    @Test
+    public void snapTarget_followsVelocityDirection() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setScrollRange(400);
+        model.scrollBy(-200);
+        assertFalse(model.isSettled());
+        assertEquals(0.5f, model.getCollapseFraction(), 0.0001f);
+
+        assertEquals(0, model.snapTargetForVelocity(10));
+        assertEquals(-400, model.snapTargetForVelocity(-10));
+
+        model.scrollBy(-150);
+        assertEquals(-400, model.snapTargetForVelocity(10));
+    }
+
+    @Test
+    public void stages_collapseInOrderAndSnapWithinStage() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setStages(new int[]{300, 100}, new boolean[]{true, false});
+        assertEquals(400, model.getScrollRange());
+
+        model.scrollBy(-100);
+        assertEquals(-100, model.getStageOffset(0));
+        assertEquals(-100, model.getStageOffset(1));
+        assertEquals(0, model.snapTarget(0.5f));
+        assertEquals(-300, model.snapTargetInDirection(false));
+        assertTrue(model.isWithinStage(-300));
+        assertFalse(model.isWithinStage(-400));
+        assertEquals(-300, model.getStageOffsetAt(0, -400));
+
+        model.scrollBy(-250);
+        assertEquals(-300, model.getStageOffset(0));
+        assertEquals(-350, model.getStageOffset(1));
+        // 第二阶段不自动伸缩
+        assertTrue(model.isSettled());
+        assertEquals(-350, model.snapTarget(0.5f));
+    }
+
+    @Test
+    public void anchors_splitStageIntoSegments() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setScrollRange(400);
+        model.setAnchors(new float[]{0.5f});
+
+        model.scrollBy(-150);
+        assertEquals(-200, model.snapTarget(0.5f));
+        assertEquals(0, model.snapTargetInDirection(true));
+
+        model.scrollBy(-50);
+        assertTrue(model.isSettled());
+
+        model.scrollBy(-20);
+        assertEquals(-200, model.snapTarget(0.5f));
+        assertEquals(-400, model.snapTargetInDirection(false));
+    }
+
+    @Test
+    public void settleDuration_scalesWithDistanceAndVelocity() throws Exception {
+        CollapseOffsetModel model = new CollapseOffsetModel();
+        model.setScrollRange(400);
+
+        assertEquals(200, model.computeSettleDuration(400, 0, 200));
+        assertEquals(100, model.computeSettleDuration(-200, 0, 200));
+        assertEquals(CollapseOffsetModel.MIN_SETTLE_DURATION, model.computeSettleDuration(3, 0, 200));
+        assertEquals(60, model.computeSettleDuration(100, 5000, 200));
+    }
+}
@@ -0,0 +1,100 @@
+package com.demon.library.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用合成的手势驱动CollapseOffsetModel和OffsetSettler完成拖动、松手、伸缩动画的计算,期间不允许产生任何对象。
+ * 只覆盖纯Java的偏移量模型和动画引擎,CollapseableLayout中的Runnable、VelocityTracker和监听分发不在检查范围内
+ */
+public class OffsetModelAllocationTest {
+
+    private static final int FRAME_MILLIS = 16;
+
+    private final CollapseOffsetModel mModel = new CollapseOffsetModel();
+    private final OffsetSettler mSettler = new OffsetSettler();
+
+    @Test
+    public void modelDragAndSettle_allocatesNothing() throws Exception {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocBean.isThreadAllocatedMemorySupported());
+        allocBean.setThreadAllocatedMemoryEnabled(true);
+
+        mModel.setStages(new int[]{300, 200}, new boolean[]{true, true});
+        mModel.setAnchors(new float[]{0.5f});
+        // 预热,排除类加载等一次性开销
+        runGesture();
+
+        final long threadId = Thread.currentThread().getId();
+        // 两次查询之间的差值即为查询本身的开销
+        final long base = allocBean.getThreadAllocatedBytes(threadId);
+        final long overhead = allocBean.getThreadAllocatedBytes(threadId) - base;
+
+        final long before = allocBean.getThreadAllocatedBytes(threadId);
+        final int frames = runGesture();
+        final long allocated = allocBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertTrue(frames > 0);
+        assertEquals(0, allocated);
+    }
+
+    /**
+     * 上推拖动、低速松手伸缩到停靠点、再下拉、高速松手伸缩到阶段边界
+     *
+     * @return 伸缩动画执行的帧数
+     */
+    private int runGesture() {
+        final CollapseOffsetModel model = mModel;
+        model.setOffset(0);
+        long time = 0;
+        int frames = 0;
+        for (int i = 0; i < 60; i++) {
+            model.scrollBy(-3);
+            sampleFrame();
+        }
+        frames += settle(model.snapTargetForVelocity(-200), -200, time);
+        time += 1000;
+        for (int i = 0; i < 40; i++) {
+            model.scrollBy(2);
+            sampleFrame();
+        }
+        frames += settle(model.snapTargetInDirection(true), 3000, time);
+        return frames;
+    }
+
+    private int settle(int target, float velocity, long startTime) {
+        final CollapseOffsetModel model = mModel;
+        final int distance = target - model.getOffset();
+        final int duration = model.computeSettleDuration(distance, velocity, 200);
+        mSettler.start(model.getOffset(), distance, duration, startTime);
+        int frames = 0;
+        for (long time = startTime + FRAME_MILLIS; mSettler.computeOffset(time); time += FRAME_MILLIS) {
+            model.setOffset(mSettler.getCurrOffset());
+            sampleFrame();
+            frames++;
+        }
+        assertEquals(target, model.getOffset());
+        return frames;
+    }
+
+    /**
+     * 每帧应用偏移量时对模型的查询
+     */
+    private void sampleFrame() {
+        final CollapseOffsetModel model = mModel;
+        for (int i = 0; i < model.getStageCount(); i++) {
+            model.getStageOffset(i);
+            model.getStageFraction(i);
+        }
+        model.getCollapseFraction();
+        model.isSettled();
+    }
+}
@@ -0,0 +1,73 @@
+package com.demon.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OverscrollModelTest {
+
+    @Test
+    public void pullBy_appliesResistanceAndStaysBelowMax() throws Exception {
+        OverscrollModel model = new OverscrollModel();
+        model.setMaxDistance(300);
+
+        assertEquals(100, model.pullBy(100));
+        final int first = model.getOffset();
+        assertTrue(first > 0 && first < 100);
+
+        model.pullBy(100);
+        // 越拉阻力越大
+        assertTrue(model.getOffset() - first < first);
+
+        model.pullBy(1000000);
+        assertTrue(model.getOffset() > 290 && model.getOffset() < 300);
+    }
+
+    @Test
+    public void pullBy_isReversible() throws Exception {
+        OverscrollModel model = new OverscrollModel();
+        model.setMaxDistance(300);
+        model.pullBy(160);
+
+        // 上推超出越界区域的部分不消耗
+        assertEquals(-160, model.pullBy(-200));
+        assertEquals(0, model.getOffset());
+        assertEquals(0, model.pullBy(-10));
+    }
+
+    @Test
+    public void disabled_consumesNothing() throws Exception {
+        OverscrollModel model = new OverscrollModel();
+
+        assertEquals(0, model.pullBy(100));
+        assertEquals(0, model.getOffset());
+    }
+
+    @Test
+    public void setOffset_continuesPullFromSameOffset() throws Exception {
+        OverscrollModel model = new OverscrollModel();
+        model.setMaxDistance(300);
+
+        assertEquals(120, model.setOffset(120));
+        model.pullBy(1);
+        assertTrue(Math.abs(model.getOffset() - 120) <= 1);
+    }
+
+    @Test
+    public void spring_settlesWithoutOvershoot() throws Exception {
+        SpringSettler spring = new SpringSettler();
+        spring.start(200, 0, 0, 0);
+
+        int last = 200;
+        long time = 0;
+        while (spring.computeOffset(time += 16)) {
+            assertTrue(spring.getCurrOffset() <= last);
+            assertTrue(spring.getCurrOffset() >= 0);
+            last = spring.getCurrOffset();
+        }
+        assertTrue(spring.isFinished());
+        assertEquals(0, spring.getCurrOffset());
+        assertTrue(time < 2000);
+    }
+}
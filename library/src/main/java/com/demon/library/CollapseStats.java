@@ -0,0 +1,167 @@
+package com.demon.library;
+
+/**
+ * CollapseableLayout 运行时统计数据,所有字段都是基本类型,统计过程不产生任何对象。
+ * 通过 {@link CollapseableLayout#snapshotStats(CollapseStats)} 获取快照,
+ * {@link CollapseableLayout#resetStats()} 清零。
+ * <p>
+ * author: demon.zhang
+ */
+public final class CollapseStats {
+
+    int measureCount;
+    int layoutCount;
+    int scrollCount;
+    int gestureCount;
+    int gestureScrollCount;
+    int lastGestureScrollCount;
+    int maxGestureScrollCount;
+    int animatorFrameCount;
+    int flingFrameCount;
+    long listenerTimeNanos;
+    int maxFrameOffsetDelta;
+    int culledDrawCount;
+    int contentLayoutCount;
+
+    /**
+     * onMeasure 执行次数
+     */
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    /**
+     * onLayout 执行次数
+     */
+    public int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * scroll 总调用次数
+     */
+    public int getScrollCount() {
+        return scrollCount;
+    }
+
+    /**
+     * 已结束的手势个数
+     */
+    public int getGestureCount() {
+        return gestureCount;
+    }
+
+    /**
+     * 最近一次手势中 scroll 调用次数
+     */
+    public int getLastGestureScrollCount() {
+        return lastGestureScrollCount;
+    }
+
+    /**
+     * 单次手势中 scroll 调用次数的最大值
+     */
+    public int getMaxGestureScrollCount() {
+        return maxGestureScrollCount;
+    }
+
+    /**
+     * 伸缩动画执行的帧数
+     */
+    public int getAnimatorFrameCount() {
+        return animatorFrameCount;
+    }
+
+    /**
+     * 惯性滑动执行的帧数
+     */
+    public int getFlingFrameCount() {
+        return flingFrameCount;
+    }
+
+    /**
+     * 偏移量监听回调中消耗的总时间,单位纳秒
+     */
+    public long getListenerTimeNanos() {
+        return listenerTimeNanos;
+    }
+
+    /**
+     * 拖动、惯性滑动和伸缩动画的单帧内偏移量变化的最大值,单位px
+     */
+    public int getMaxFrameOffsetDelta() {
+        return maxFrameOffsetDelta;
+    }
+
+    /**
+     * header区块因为完全被遮住或者超出边界而停止绘制的次数:
+     * 移动时被设置为INVISIBLE,或者绘制时发现完全不可见而跳过
+     */
+    public int getCulledDrawCount() {
+        return culledDrawCount;
+    }
+
+    /**
+     * 布局边界模式下单独重新布局content的次数,不计入 onMeasure/onLayout
+     */
+    public int getContentLayoutCount() {
+        return contentLayoutCount;
+    }
+
+    /**
+     * @param inGesture 是否由手指拖动产生,惯性滑动和动画不计入手势
+     */
+    void onScroll(boolean inGesture) {
+        scrollCount++;
+        if (inGesture) {
+            gestureScrollCount++;
+        }
+    }
+
+    void onGestureEnd() {
+        gestureCount++;
+        lastGestureScrollCount = gestureScrollCount;
+        if (gestureScrollCount > maxGestureScrollCount) {
+            maxGestureScrollCount = gestureScrollCount;
+        }
+        gestureScrollCount = 0;
+    }
+
+    void onFrameOffsetDelta(int delta) {
+        if (delta > maxFrameOffsetDelta) {
+            maxFrameOffsetDelta = delta;
+        }
+    }
+
+    void copyTo(CollapseStats out) {
+        out.measureCount = measureCount;
+        out.layoutCount = layoutCount;
+        out.scrollCount = scrollCount;
+        out.gestureCount = gestureCount;
+        out.gestureScrollCount = gestureScrollCount;
+        out.lastGestureScrollCount = lastGestureScrollCount;
+        out.maxGestureScrollCount = maxGestureScrollCount;
+        out.animatorFrameCount = animatorFrameCount;
+        out.flingFrameCount = flingFrameCount;
+        out.listenerTimeNanos = listenerTimeNanos;
+        out.maxFrameOffsetDelta = maxFrameOffsetDelta;
+        out.culledDrawCount = culledDrawCount;
+        out.contentLayoutCount = contentLayoutCount;
+    }
+
+    void reset() {
+        measureCount = 0;
+        layoutCount = 0;
+        scrollCount = 0;
+        gestureCount = 0;
+        gestureScrollCount = 0;
+        lastGestureScrollCount = 0;
+        maxGestureScrollCount = 0;
+        animatorFrameCount = 0;
+        flingFrameCount = 0;
+        listenerTimeNanos = 0;
+        maxFrameOffsetDelta = 0;
+        culledDrawCount = 0;
+        contentLayoutCount = 0;
+    }
+}
@@ -1,60 +1,250 @@
 package com.demon.library;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.UiThread;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.util.SimpleArrayMap;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.OnApplyWindowInsetsListener;
+import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewPager;
+import android.support.v4.view.WindowInsetsCompat;
 import android.support.v4.widget.NestedScrollView;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.Gravity;
+import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewPropertyAnimator;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
 import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.widget.AbsListView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
+import android.widget.OverScroller;
+
+import com.demon.library.core.CollapseOffsetModel;
+import com.demon.library.core.OffsetSettler;
+import com.demon.library.core.OverscrollModel;
+import com.demon.library.core.SpringSettler;
+
+import java.util.Arrays;
 
 /**
  * 可折叠的根布局:
  * 需要在XML文件中通过以下标记来指定相应元素:
  * app:collapse_header 标识header
- * app:collapse_content 标识content
- * app:collapse_scroll 标识真正可以滑动的View,目前支持的控件包括:Listview, Recyclerview, NestedScrollView
- * app:collapse_shrink_height 标识折叠到顶端的距离
+ * app:collapse_content 标识content,content必须是最后一个孩子,它前面的所有孩子都是header区块,按顺序依次折叠
+ * app:collapse_scroll 标识真正可以滑动的View,内置支持Listview, Recyclerview, NestedScrollView,
+ * 其他控件通过canScrollVertically判断,也可以通过registerScrollabilityProvider注册自定义的判断逻辑
+ * app:collapse_shrink_height 标识折叠到顶端的距离,运行时可以通过setCollapseHeight修改
+ * app:collapse_apply_insets 折叠后保留的高度加上状态栏等顶部的系统窗口inset
+ * app:collapse_nested_scroll 是否开启嵌套滑动模式,开启后一次手势即可先折叠header再滑动列表
+ * app:collapse_translation_mode 是否通过translationY来移动header和content,不改变布局位置
+ * app:collapse_coalesce_offset 偏移量回调是否合并为每帧一次
+ * app:collapse_snap_anchors 中间停靠点,指向一个折叠比例(0~1)的数组资源,例如0.5表示半展开
+ * app:collapse_min_fling_velocity 触发惯性滑动的最小速度(每秒移动的距离,支持dp)
+ * app:collapse_settle_duration 伸缩动画移动整个折叠范围所需的时间(毫秒),距离越短时间越短
+ * app:collapse_render_thread_settle 伸缩动画交给ViewPropertyAnimator执行,需要同时开启collapse_translation_mode
+ * app:collapse_moving_layer 拖动、惯性滑动和伸缩动画期间使用硬件层绘制的部分: header, content
+ * app:collapse_layout_boundary content尺寸固定时,content内部的requestLayout只重新布局content,不再向上传递
+ * app:collapse_overscroll_distance 完全展开以后继续下拉的越界距离上限,0表示关闭
+ * app:collapse_overscroll_resistance 越界区域的阻力,刚进入时越界距离与手指距离的比例(0~1)
+ * app:collapse_overscroll_stretch 越界时拉伸第一个header区块,而不是把整个布局向下移动
+ * app:collapse_refresh_threshold 松手时越界距离超过该值触发刷新,刷新期间停在该位置
+ * <p>
+ * header区块可以通过以下LayoutParams属性设置每个阶段的折叠行为:
+ * app:layout_collapse_height 该区块折叠以后保留的高度,最后一个区块默认为collapse_shrink_height,其余默认为0
+ * app:layout_collapse_snap 松手后是否自动伸缩到该阶段的边界,默认为true
+ * app:layout_collapse_mode scroll: 整体上移(默认), resize: 位置不动,通过裁剪缩小可见高度,不会重新测量
+ * app:layout_collapse_resize_gravity resize模式下孩子的对齐方式: top, center, bottom
+ * app:layout_collapse_layout 该区块只是占位,真正的header区块布局,占位的LayoutParams(包括高度)保留给真正的区块
+ * app:layout_collapse_inflate 占位替换的时机: async 在后台线程加载(默认), reveal 第一次出现在屏幕上时加载
+ * 以及header区块内部孩子随偏移量变化的效果(参见ScrollEffect):
+ * app:layout_collapse_parallax 视差因子
+ * app:layout_collapse_fade_start, app:layout_collapse_fade_end 渐隐的进度范围
+ * app:layout_collapse_scale, app:layout_collapse_scale_start, app:layout_collapse_scale_end 缩放比例及进度范围
+ * app:layout_collapse_pin 吸顶
+ * <p>
+ * 测量和布局由自身完成,不支持LinearLayout的layout_weight、divider以及纵向的gravity,设置时直接抛出异常。
  * <p>
  * author: demon.zhang
  * time  : 17/1/8 下午5:15
  */
 @UiThread
-public class CollapseableLayout extends LinearLayout {
+public class CollapseableLayout extends LinearLayout implements NestedScrollingParent {
 
     private static final int INVALID_VALUE = 0;
     private static final int INVALID_POINTER = -1;
+    private static final int NO_CLIP = Integer.MIN_VALUE;
+    private static final Object[] EMPTY_LISTENERS = new Object[0];
+    private static final int DEFAULT_SETTLE_DURATION = 200;
+    /**
+     * 与OffsetSettler相同的减速曲线
+     */
+    private static final Interpolator SETTLE_INTERPOLATOR = new DecelerateInterpolator();
+
+    public static final int MOVING_LAYER_HEADER = 1;
+    public static final int MOVING_LAYER_CONTENT = 1 << 1;
+    /**
+     * 停止移动以后延迟一段时间再恢复,避免连续的手势反复创建硬件层
+     */
+    private static final int MOVING_LAYER_IDLE_DELAY = 100;
+
+    private static final String TRACE_MEASURE = "CollapseableLayout#onMeasure";
+    private static final String TRACE_LAYOUT = "CollapseableLayout#onLayout";
+    private static final String TRACE_SCROLL = "CollapseableLayout#scroll";
+    private static final String TRACE_FLING = "CollapseableLayout#fling";
+    private static final String TRACE_ANIM_FRAME = "CollapseableLayout#animFrame";
+    private static final String TRACE_FLING_FRAME = "CollapseableLayout#flingFrame";
+    private static final String TRACE_DISPATCH = "CollapseableLayout#dispatchOffset";
+    private static final String TRACE_CONTENT_LAYOUT = "CollapseableLayout#contentLayout";
 
     private int mHeaderId, mContentId, mScrollViewId;
     private int mCollapseHeight;
+    /**
+     * 顶部的系统窗口inset,计入最后一个header区块折叠后保留的高度
+     */
+    private int mTopInset;
+    private boolean mApplyTopInset;
+    /**
+     * 折叠后保留高度的动画
+     */
+    private final OffsetSettler mCollapseHeightSettler = new OffsetSettler();
+    private boolean mCollapseHeightAnimRunning;
+    /**
+     * 上一次onMeasure的高度规格,保留高度变化时用来单独计算content的高度
+     */
+    private int mLastHeightMeasureSpec;
 
-    private View mHeaderView;
+    /**
+     * 按顺序排列的header区块,第一个区块最先折叠
+     */
+    private View[] mHeaderViews;
     private View mContentView;
+    /**
+     * header区块和content当前已经应用的偏移量
+     */
+    private int[] mHeaderOffsets;
+    private int mContentOffset;
+    /**
+     * 上一次测量content使用的规格
+     */
+    private int mContentWidthSpec = -1;
+    private int mContentHeightSpec = -1;
+    /**
+     * 上一次onMeasure时content的LayoutParams(包括宽高和margin)以及可见性,
+     * 发生变化时content的布局请求需要经过完整的测量和布局
+     */
+    private ViewGroup.LayoutParams mMeasuredContentLp;
+    private int mMeasuredContentWidth;
+    private int mMeasuredContentHeight;
+    private final Rect mMeasuredContentMargins = new Rect();
+    private int mMeasuredContentVisibility;
+    /**
+     * 布局边界模式:content的测量规格固定时,content内部的requestLayout在这里截止,
+     * 下一帧只按照上一次的规格重新测量、在当前位置重新布局content,header不受影响
+     */
+    private boolean mContentLayoutBoundary;
+    private boolean mContentLayoutScheduled;
+    private boolean mInLayout;
+    /**
+     * 每个阶段的折叠范围和自动伸缩配置,onLayout时更新,复用数组
+     */
+    private int[] mStageRanges;
+    private boolean[] mStageSnap;
+    /**
+     * header区块的可见区域(父容器坐标),被绘制在它之上的区块或者content遮住的部分不再绘制
+     */
+    private final Rect mHeaderClip = new Rect();
+    /**
+     * 完全不可见时由CollapseableLayout设置为INVISIBLE的header区块,重新可见时恢复为VISIBLE。
+     * 期间外部把可见性改成了其他值时清除标记,以外部设置的为准
+     */
+    private boolean[] mHeaderHidden;
+    /**
+     * 上一次绘制时每个header区块的裁剪区域(父容器坐标),没有裁剪时为NO_CLIP。
+     * 裁剪记录在父容器的DisplayList中,孩子移动不会重新记录,裁剪区域变化时需要重绘父容器
+     */
+    private int[] mHeaderClipTops;
+    private int[] mHeaderClipBottoms;
+    /**
+     * resize模式的header区块当前应用到孩子上的收缩量
+     */
+    private int[] mHeaderShrinks;
+
+    /**
+     * header内部控件的滚动效果,每一项包括控件、效果、所在的header区块以及上一次设置的属性值,
+     * 属性值没有变化时不再重复设置
+     */
+    private View[] mEffectViews = new View[0];
+    private ScrollEffect[] mEffects = new ScrollEffect[0];
+    private int[] mEffectSections = new int[0];
+    private float[] mEffectValues = new float[0];
     /**
      * 真正可以滑动的孩子,通过他的行为来判断是否可以继续下滑
      */
     private View mRealScrollAbleView;
+    /**
+     * mRealScrollAbleView对应的判断逻辑,滑动目标变化时解析一次
+     */
+    private ScrollabilityProvider mScrollabilityProvider;
+    private SimpleArrayMap<Class<?>, ScrollabilityProvider> mScrollabilityProviders;
+    /**
+     * 分页模式:每一页的滑动目标及其判断逻辑按页缓存,切换页面时直接取出,不再遍历整棵树
+     */
+    private SparseArray<View> mPageScrollViews;
+    private SparseArray<ScrollabilityProvider> mPageScrollabilityProviders;
+    private ViewPager mViewPager;
+    private PagerAdapter mPagerAdapter;
+    /**
+     * 页面切换时新页面还没有创建或者还没有布局,等ViewPager下一次布局完成或者滑动停止以后再查找
+     */
+    private boolean mPendingPageResolve;
+    private boolean mPageLayoutListening;
 
     private boolean mIsBeingDragged;
 
     private int mTouchSlop = -1;
-    private int mLastMotionY;
+    private float mLastMotionY;
     private int mActivePointerId = INVALID_POINTER;
 
-    private int mCurOffset;
+    /**
+     * 拖动距离按帧合并:两帧之间的所有MOVE只累加,在下一次Choreographer回调时统一执行一次scroll(int)
+     */
+    private float mPendingDragDy;
+    private boolean mDragFrameScheduled;
+
+    /**
+     * 偏移量的截断和伸缩决策都交给纯Java的模型,这里只负责把偏移量应用到View上
+     */
+    private final CollapseOffsetModel mOffsetModel = new CollapseOffsetModel();
+
+    /**
+     * 通过translationY(RenderNode属性)而不是offsetTopAndBottom来移动header和content,
+     * 布局位置保持不变,拖动过程中只需要重绘,不会触发重新布局。
+     * 该模式下header和content的translationY由CollapseableLayout接管。
+     */
+    private boolean mTranslationMode;
 
     /**
      * 是否可以折叠
@@ -65,11 +255,81 @@ public class CollapseableLayout extends LinearLayout {
      */
     private boolean mFlexible = true;
 
-    private ValueAnimator mOffsetAnimator;
+    /**
+     * 伸缩动画:复用同一个计算引擎,由postOnAnimation逐帧驱动,动画过程中不产生任何对象
+     */
+    private final OffsetSettler mSettler = new OffsetSettler();
     private boolean mIsAnimRunning;
+    /**
+     * 伸缩动画交给ViewPropertyAnimator执行:只改变RenderNode属性,支持的系统上由RenderThread驱动,
+     * 主线程繁忙时动画也不会卡住。偏移量和监听在动画结束时同步。
+     */
+    private boolean mRenderThreadSettle;
+    private boolean mRenderSettleRunning;
+
+    /**
+     * 完全展开以后继续下拉的越界区域,由拖动和嵌套滑动产生,松手后通过弹簧回弹
+     */
+    private final OverscrollModel mOverscroll = new OverscrollModel();
+    private final SpringSettler mSpring = new SpringSettler();
+    private boolean mSpringRunning;
+    private boolean mOverscrollStretch;
+    private int mAppliedStretch;
+    private int mRefreshThreshold;
+    private boolean mRefreshing;
+
+    /**
+     * 延迟加载的header区块:正在加载中的区块,以及共用的后台加载器
+     */
+    private boolean[] mHeaderInflating;
+    private AsyncLayoutInflater mAsyncInflater;
+    /**
+     * 占位替换之前恢复的视图状态,替换以后恢复到真正的区块上
+     */
+    private SparseArray<Parcelable> mPendingHeaderState;
+
+    /**
+     * 移动期间提升为硬件层的部分:移动header和content只需要合成硬件层,不需要重新绘制整棵子树
+     */
+    private int mMovingLayerFlags;
+    private boolean mMovingLayerActive;
+    /**
+     * 被提升为硬件层的孩子,恢复时只处理这些孩子,不影响外部设置的layerType
+     */
+    private View[] mLayerViews;
+    private int mLayerViewCount;
 
+    /**
+     * 整个生命周期复用同一个VelocityTracker,每次手势开始时清空,detach时回收
+     */
     private VelocityTracker mVelocityTracker;
 
+    /**
+     * 离手以后按照真实速度做惯性滑动,header折叠到顶以后剩余的速度交给mRealScrollAbleView
+     */
+    private final OverScroller mScroller;
+    private int mMinimumFlingVelocity;
+    /**
+     * 伸缩动画移动整个折叠范围所需的时间,实际时长按照距离和速度缩放
+     */
+    private int mSettleDuration = DEFAULT_SETTLE_DURATION;
+    private int mLastFlingY;
+    private float mFlingVelocity;
+
+    /**
+     * 嵌套滑动模式:孩子(RecyclerView, NestedScrollView)先把滑动距离交给父容器,
+     * 父容器折叠完header以后,剩余距离在同一帧内交还给孩子继续滑动
+     */
+    private boolean mNestedScrollMode;
+    private boolean mNestedScrollInProgress;
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper;
+
+    private final CollapseStats mStats = new CollapseStats();
+    /**
+     * 调试用:记录收到的触摸事件流
+     */
+    private TouchTrace mTouchTrace;
+
     public CollapseableLayout(Context context) {
         this(context, null);
     }
@@ -87,37 +347,182 @@ public class CollapseableLayout extends LinearLayout {
         mContentId = arr.getResourceId(R.styleable.CollapseableLayout_collapse_content, INVALID_VALUE);
         mScrollViewId = arr.getResourceId(R.styleable.CollapseableLayout_collapse_scroll, INVALID_VALUE);
         mCollapseHeight = arr.getDimensionPixelOffset(R.styleable.CollapseableLayout_collapse_shrink_height, INVALID_VALUE);
+        final boolean applyInsets = arr.getBoolean(R.styleable.CollapseableLayout_collapse_apply_insets, false);
+        mNestedScrollMode = arr.getBoolean(R.styleable.CollapseableLayout_collapse_nested_scroll, false);
+        mTranslationMode = arr.getBoolean(R.styleable.CollapseableLayout_collapse_translation_mode, false);
+        mCoalesceOffsetDispatch = arr.getBoolean(R.styleable.CollapseableLayout_collapse_coalesce_offset, false);
+        mRenderThreadSettle = arr.getBoolean(R.styleable.CollapseableLayout_collapse_render_thread_settle, false);
+        mMovingLayerFlags = arr.getInt(R.styleable.CollapseableLayout_collapse_moving_layer, 0);
+        mContentLayoutBoundary = arr.getBoolean(R.styleable.CollapseableLayout_collapse_layout_boundary, false);
+        mMinimumFlingVelocity = arr.getDimensionPixelSize(R.styleable.CollapseableLayout_collapse_min_fling_velocity,
+                ViewConfiguration.get(context).getScaledMinimumFlingVelocity());
+        mSettleDuration = arr.getInt(R.styleable.CollapseableLayout_collapse_settle_duration, DEFAULT_SETTLE_DURATION);
+        final int anchorsId = arr.getResourceId(R.styleable.CollapseableLayout_collapse_snap_anchors, INVALID_VALUE);
+        mOverscroll.setMaxDistance(arr.getDimensionPixelSize(
+                R.styleable.CollapseableLayout_collapse_overscroll_distance, 0));
+        mOverscroll.setResistance(arr.getFloat(R.styleable.CollapseableLayout_collapse_overscroll_resistance,
+                OverscrollModel.DEFAULT_RESISTANCE));
+        mOverscrollStretch = arr.getBoolean(R.styleable.CollapseableLayout_collapse_overscroll_stretch, false);
+        mRefreshThreshold = arr.getDimensionPixelSize(R.styleable.CollapseableLayout_collapse_refresh_threshold, 0);
         arr.recycle();
 
-        initOffsetAnim();
+        if (anchorsId != INVALID_VALUE) {
+            TypedArray anchors = getResources().obtainTypedArray(anchorsId);
+            final float[] fractions = new float[anchors.length()];
+            for (int i = 0; i < fractions.length; i++) {
+                fractions[i] = anchors.getFloat(i, 0);
+            }
+            anchors.recycle();
+            mOffsetModel.setAnchors(fractions);
+        }
+
+        mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+        mScroller = new OverScroller(context);
+        if (applyInsets) {
+            setApplyTopInset(true);
+        }
     }
 
-    private int mLastAnimateValue;
+    /**
+     * 从SavedState恢复的偏移量,在第一次onLayout确定折叠范围以后直接应用,不需要额外的布局和动画
+     */
+    private boolean mHasPendingRestore;
+    private int mPendingRestoreOffset;
+    private int mPendingRestoreState;
+
+    private final Runnable mSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            TraceCompat.beginSection(TRACE_ANIM_FRAME);
+            final int startOffset = mOffsetModel.getOffset();
+            try {
+                if (!mSettler.computeOffset(AnimationUtils.currentAnimationTimeMillis())) {
+                    mIsAnimRunning = false;
+                    return;
+                }
+                mStats.animatorFrameCount++;
+                scroll(mSettler.getCurrOffset() - mOffsetModel.getOffset());
+                if (mSettler.isFinished()) {
+                    mIsAnimRunning = false;
+                } else {
+                    ViewCompat.postOnAnimation(CollapseableLayout.this, this);
+                }
+            } finally {
+                mStats.onFrameOffsetDelta(Math.abs(mOffsetModel.getOffset() - startOffset));
+                TraceCompat.endSection();
+            }
+        }
+    };
 
-    private void initOffsetAnim() {
-        mOffsetAnimator = new ValueAnimator();
-        mOffsetAnimator.setInterpolator(new DecelerateInterpolator());
-        mOffsetAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                int value = (int) animation.getAnimatedValue();
-                scroll(value - mLastAnimateValue);
-                mLastAnimateValue = value;
+    private void cancelSettle() {
+        if (mIsAnimRunning) {
+            mSettler.abort();
+            mIsAnimRunning = false;
+            if (mRenderSettleRunning) {
+                finishRenderSettle(true);
+            } else {
+                removeCallbacks(mSettleRunnable);
             }
-        });
-        mOffsetAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-                mIsAnimRunning = true;
+        }
+    }
+
+    /**
+     * 目标和当前位置处于同一个阶段时,所有仍在移动的区块和content的位移相同,
+     * 可以直接对它们的translationY做属性动画,结果和逐帧计算完全一致
+     *
+     * @return false: 不满足条件,使用逐帧计算的动画
+     */
+    private boolean startRenderSettle(int targetOffset, int duration) {
+        if (!mRenderThreadSettle || !mTranslationMode || !mOffsetModel.isWithinStage(targetOffset)
+                || hasResizeHeader() || mOverscroll.getOffset() != 0) {
+            // resize模式的区块每一帧都需要更新裁剪区域,无法交给RenderThread
+            return false;
+        }
+        mRenderSettleRunning = true;
+        startMovingLayer();
+        mIsAnimRunning = true;
+        // 动画过程中主线程不再重新记录绘制指令,被裁剪或隐藏的区块先恢复完整绘制
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            showCulledHeader(i);
+            final int offset = mOffsetModel.getStageOffsetAt(i, targetOffset);
+            if (offset != mHeaderOffsets[i]) {
+                animateProperty(mHeaderViews[i].animate().translationY(offset), duration);
+            }
+        }
+        animateProperty(mContentView.animate().translationY(targetOffset), duration);
+        // 视差等效果同时动画到终点的属性值,平移与逐帧计算一致,渐隐和缩放在进度范围的边界处略有差异
+        for (int i = 0; i < mEffectViews.length; i++) {
+            final ScrollEffect effect = mEffects[i];
+            final int section = mEffectSections[i];
+            final float fraction = mOffsetModel.getStageFractionAt(section, targetOffset);
+            final ViewPropertyAnimator animator = mEffectViews[i].animate()
+                    .translationY(effect.computeTranslationY(mOffsetModel.getStageOffsetAt(section, targetOffset)));
+            if (effect.hasFade()) {
+                animator.alpha(effect.computeAlpha(fraction));
+            }
+            if (effect.hasScale()) {
+                final float scale = effect.computeScale(fraction);
+                animator.scaleX(scale).scaleY(scale);
             }
+            animateProperty(animator, duration);
+        }
+        invalidate();
+        // 不设置监听和endAction,以免ViewPropertyAnimator退回到主线程执行
+        postDelayed(mRenderSettleEndRunnable, duration);
+        return true;
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                mIsAnimRunning = false;
+    private static void animateProperty(ViewPropertyAnimator animator, int duration) {
+        animator.setDuration(duration).setStartDelay(0).setInterpolator(SETTLE_INTERPOLATOR).start();
+    }
+
+    private final Runnable mRenderSettleEndRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsAnimRunning = false;
+            finishRenderSettle(false);
+        }
+    };
+
+    /**
+     * 同步属性动画的结果:偏移量、已应用的属性值以及监听
+     *
+     * @param canceled 动画被中断时,以content当前的translationY作为偏移量
+     */
+    private void finishRenderSettle(boolean canceled) {
+        mRenderSettleRunning = false;
+        removeCallbacks(mRenderSettleEndRunnable);
+        final int offset;
+        if (canceled) {
+            offset = Math.round(ViewCompat.getTranslationY(mContentView));
+            for (View header : mHeaderViews) {
+                header.animate().cancel();
             }
-        });
-        mOffsetAnimator.setDuration(200);
-        mOffsetAnimator.setIntValues();
+            mContentView.animate().cancel();
+            for (View view : mEffectViews) {
+                view.animate().cancel();
+            }
+        } else {
+            offset = mSettler.getFinalOffset();
+        }
+        final int delta = mOffsetModel.setOffset(offset);
+        // 属性动画绕过了applyOffset,已应用的值全部作废,强制重新设置
+        Arrays.fill(mHeaderOffsets, Integer.MIN_VALUE);
+        mContentOffset = Integer.MIN_VALUE;
+        Arrays.fill(mEffectValues, Float.NaN);
+        applyOffset();
+        invalidate();
+        if (delta != 0) {
+            notifyOffsetChanged();
+        }
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (mTouchTrace != null) {
+            mTouchTrace.record(ev);
+        }
+        return super.dispatchTouchEvent(ev);
     }
 
     @Override
@@ -136,13 +541,27 @@ public class CollapseableLayout extends LinearLayout {
 
         switch (MotionEventCompat.getActionMasked(ev)) {
             case MotionEvent.ACTION_DOWN: {
-                mIsBeingDragged = false;
-                mLastMotionY = (int) ev.getY();
+                // 惯性滑动或者回弹过程中按下,停止滑动并直接接管本次手势
+                mIsBeingDragged = !mScroller.isFinished() || mSpringRunning;
+                abortFling();
+                abortSpring();
+                mLastMotionY = ev.getY();
+                mPendingDragDy = 0;
                 mActivePointerId = ev.getPointerId(0);
                 ensureVelocityTracker();
                 break;
             }
 
+            case MotionEventCompat.ACTION_POINTER_DOWN: {
+                onSecondaryPointerDown(ev);
+                break;
+            }
+
+            case MotionEventCompat.ACTION_POINTER_UP: {
+                onSecondaryPointerUp(ev);
+                break;
+            }
+
             case MotionEvent.ACTION_MOVE: {
                 final int activePointerId = mActivePointerId;
                 if (activePointerId == INVALID_POINTER) {
@@ -153,12 +572,17 @@ public class CollapseableLayout extends LinearLayout {
                     break;
                 }
 
-                final int y = (int) ev.getY(pointerIndex);
-                final int yDiff = y - mLastMotionY;
+                final float y = ev.getY(pointerIndex);
+                final float yDiff = y - mLastMotionY;
+
+                if (mNestedScrollInProgress) {
+                    // 嵌套滑动过程中,由孩子通过onNestedPreScroll把距离分发过来,父容器不再拦截
+                    break;
+                }
 
                 if (Math.abs(yDiff) > mTouchSlop) {
                     // 上滑,滑到顶端以后,事件交给孩子,自己不在处理
-                    if (yDiff < 0 && mContentView.getTop() <= mCollapseHeight) {
+                    if (yDiff < 0 && mOffsetModel.isCollapsed()) {
                         return false;
                     }
                     // 下滑的时候,孩子只要能下滑,先让孩子下滑
@@ -176,10 +600,6 @@ public class CollapseableLayout extends LinearLayout {
             case MotionEvent.ACTION_UP: {
                 mIsBeingDragged = false;
                 mActivePointerId = INVALID_POINTER;
-                if (mVelocityTracker != null) {
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                }
                 break;
             }
         }
@@ -201,28 +621,48 @@ public class CollapseableLayout extends LinearLayout {
         }
         switch (MotionEventCompat.getActionMasked(ev)) {
             case MotionEvent.ACTION_DOWN: {
-                mLastMotionY = (int) ev.getY();
+                abortSpring();
+                if (mRenderSettleRunning) {
+                    // 属性动画期间模型仍然停在起点,先停住动画并以当前的translationY作为偏移量,拖动从这里开始
+                    cancelSettle();
+                }
+                mLastMotionY = ev.getY();
+                mPendingDragDy = 0;
                 mActivePointerId = ev.getPointerId(0);
                 ensureVelocityTracker();
                 break;
             }
 
+            case MotionEventCompat.ACTION_POINTER_DOWN: {
+                onSecondaryPointerDown(ev);
+                break;
+            }
+
+            case MotionEventCompat.ACTION_POINTER_UP: {
+                onSecondaryPointerUp(ev);
+                break;
+            }
+
             case MotionEvent.ACTION_MOVE: {
                 final int activePointerIndex = ev.findPointerIndex(mActivePointerId);
                 if (activePointerIndex == -1) {
                     return false;
                 }
 
-                final int y = (int) ev.getY(activePointerIndex);
-                int dy = y - mLastMotionY;
-
+                // 历史采样点之间的位移首尾相消,只需要取最新的采样点;历史采样点由VelocityTracker.addMovement完整消费
+                final float y = ev.getY(activePointerIndex);
+                mIsBeingDragged = true;
+                mPendingDragDy += y - mLastMotionY;
                 mLastMotionY = y;
-                scroll(dy);
+                scheduleDragFrame();
                 break;
             }
 
             case MotionEvent.ACTION_UP:
-                if (mFlexible && mVelocityTracker != null) {
+                // 离手前先把本帧还未执行的拖动距离应用掉,保证fling从正确的位置开始
+                flushPendingDrag();
+                // 越界区域由回弹收回,不再惯性滑动
+                if (mFlexible && mVelocityTracker != null && mOverscroll.getOffset() == 0) {
                     mVelocityTracker.addMovement(ev);
                     mVelocityTracker.computeCurrentVelocity(1000);
 
@@ -230,13 +670,11 @@ public class CollapseableLayout extends LinearLayout {
                             mActivePointerId));
                 }
             case MotionEvent.ACTION_CANCEL:
+                flushPendingDrag();
+                releaseOverscroll();
+                mStats.onGestureEnd();
                 mIsBeingDragged = false;
                 mActivePointerId = INVALID_POINTER;
-
-                if (mVelocityTracker != null) {
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                }
                 break;
         }
 
@@ -247,33 +685,211 @@ public class CollapseableLayout extends LinearLayout {
         return true;
     }
 
+    private void onSecondaryPointerDown(MotionEvent ev) {
+        // 新按下的手指接管拖动
+        final int index = MotionEventCompat.getActionIndex(ev);
+        mLastMotionY = ev.getY(index);
+        mActivePointerId = ev.getPointerId(index);
+    }
+
+    private void onSecondaryPointerUp(MotionEvent ev) {
+        final int pointerIndex = MotionEventCompat.getActionIndex(ev);
+        final int pointerId = ev.getPointerId(pointerIndex);
+        if (pointerId == mActivePointerId) {
+            // 抬起的是当前活动的手指,选择另外一个手指继续拖动
+            final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
+            mLastMotionY = ev.getY(newPointerIndex);
+            mActivePointerId = ev.getPointerId(newPointerIndex);
+            if (mVelocityTracker != null) {
+                mVelocityTracker.clear();
+            }
+        }
+    }
+
+    private final Runnable mDragFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDragFrameScheduled = false;
+            final int startOffset = mOffsetModel.getOffset();
+            applyPendingDrag();
+            mStats.onFrameOffsetDelta(Math.abs(mOffsetModel.getOffset() - startOffset));
+        }
+    };
+
+    private void scheduleDragFrame() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // 没有Choreographer的系统,输入事件没有按帧批处理,直接执行
+            applyPendingDrag();
+            return;
+        }
+        if (!mDragFrameScheduled) {
+            mDragFrameScheduled = true;
+            ViewCompat.postOnAnimation(this, mDragFrameRunnable);
+        }
+    }
+
+    private void flushPendingDrag() {
+        if (mDragFrameScheduled) {
+            removeCallbacks(mDragFrameRunnable);
+            mDragFrameScheduled = false;
+        }
+        applyPendingDrag();
+    }
+
+    private void applyPendingDrag() {
+        final int dy = (int) mPendingDragDy;
+        if (dy == 0) {
+            return;
+        }
+        // 保留小数部分,避免慢速拖动时的位移丢失
+        mPendingDragDy -= dy;
+        drag(dy);
+    }
+
+    /**
+     * 手势开始时调用,清空上一次手势的采样点
+     */
     private void ensureVelocityTracker() {
         if (mVelocityTracker == null) {
             mVelocityTracker = VelocityTracker.obtain();
+        } else {
+            mVelocityTracker.clear();
         }
     }
 
-    private void animateOffsetTo(float factor) {
-        if (mOffsetAnimator != null && mOffsetAnimator.isRunning()) {
-            mOffsetAnimator.cancel();
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // 离开窗口时取消的页面查找,重新进入窗口以后继续
+        if (mPendingPageResolve && mViewPager != null) {
+            mViewPager.post(mResolvePageRunnable);
         }
-        if (Math.abs(mHeaderView.getTop()) < (mHeaderView.getHeight() - mCollapseHeight) * factor) {
-            animateOffsetToEnd();
-        } else {
-            animateOffsetToStart();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Choreographer的回调不会随着离开窗口而移除,不取消的话动画会继续驱动偏移量和监听
+        finishMotion();
+        releaseIdleState();
+        if (mContentLayoutScheduled) {
+            removeCallbacks(mContentLayoutRunnable);
+            mContentLayoutScheduled = false;
+            // content的布局请求交给重新进入窗口以后的完整布局
+            super.requestLayout();
+        }
+        if (mViewPager != null) {
+            mViewPager.removeCallbacks(mResolvePageRunnable);
+            stopListenPageLayout();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // 自身或者祖先不可见时,动画没有必要继续占用每一帧
+        if (visibility != VISIBLE && mScroller != null) {
+            finishMotion();
+            releaseIdleState();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility != VISIBLE && mScroller != null) {
+            finishMotion();
+            releaseIdleState();
+        }
+    }
+
+    /**
+     * 结束所有进行中的动画、惯性滑动和拖动,直接停在动画的终点,偏移量回调立即发出
+     */
+    private void finishMotion() {
+        if (mIsAnimRunning) {
+            final int target = mSettler.getFinalOffset();
+            cancelSettle();
+            scroll(target - mOffsetModel.getOffset());
+        }
+        final boolean flinging = !mScroller.isFinished();
+        abortFling();
+        if (flinging && !mOffsetModel.isSettled()) {
+            scroll(mOffsetModel.snapTargetInDirection(mFlingVelocity > 0) - mOffsetModel.getOffset());
+        }
+        if (mCollapseHeightAnimRunning) {
+            mCollapseHeightAnimRunning = false;
+            mCollapseHeightSettler.abort();
+            removeCallbacks(mCollapseHeightRunnable);
+            applyCollapseHeight(mCollapseHeightSettler.getFinalOffset());
+        }
+        if (mSpringRunning) {
+            abortSpring();
+            setOverscroll(mSpring.getFinalOffset());
+        } else if (mIsBeingDragged && mOverscroll.getOffset() > 0) {
+            setOverscroll(mRefreshing ? mRefreshThreshold : 0);
         }
+        // 被打断的手势不会再收到UP/CANCEL,未应用的拖动距离直接丢弃
+        if (mDragFrameScheduled) {
+            removeCallbacks(mDragFrameRunnable);
+            mDragFrameScheduled = false;
+        }
+        mPendingDragDy = 0;
+        if (mIsBeingDragged) {
+            mIsBeingDragged = false;
+            mActivePointerId = INVALID_POINTER;
+            mStats.onGestureEnd();
+        }
+        if (mOffsetDispatchScheduled) {
+            removeCallbacks(mDispatchOffsetRunnable);
+            mOffsetDispatchScheduled = false;
+            dispatchOffsetChanged();
+        }
+    }
+
+    /**
+     * 空闲时释放只在手势和移动过程中使用的资源,下一次手势开始时重新获取
+     */
+    private void releaseIdleState() {
+        stopMovingLayer();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    private void animateOffsetTo(float factor, float velocityY) {
+        animateToOffset(mOffsetModel.snapTarget(factor), velocityY);
     }
 
     private void animateOffsetToStart() {
-        mLastAnimateValue = mHeaderView.getHeight() - mCollapseHeight - Math.abs(mHeaderView.getTop());
-        mOffsetAnimator.setIntValues(mLastAnimateValue, 0);
-        mOffsetAnimator.start();
+        animateToOffset(-mOffsetModel.getScrollRange(), 0);
     }
 
     private void animateOffsetToEnd() {
-        mLastAnimateValue = 0;
-        mOffsetAnimator.setIntValues(0, Math.abs(mHeaderView.getTop()));
-        mOffsetAnimator.start();
+        animateToOffset(0, 0);
+    }
+
+    /**
+     * @param velocityY 松手时的速度,方向和目标一致时用来缩短动画时间
+     */
+    private void animateToOffset(int targetOffset, float velocityY) {
+        cancelSettle();
+        abortFling();
+        final int distance = targetOffset - mOffsetModel.getOffset();
+        if (distance == 0) {
+            return;
+        }
+        if (distance > 0 != velocityY > 0) {
+            velocityY = 0;
+        }
+        final int duration = mOffsetModel.computeSettleDuration(distance, velocityY, mSettleDuration);
+        mSettler.start(mOffsetModel.getOffset(), distance, duration, AnimationUtils.currentAnimationTimeMillis());
+        if (startRenderSettle(targetOffset, duration)) {
+            return;
+        }
+        mIsAnimRunning = true;
+        ViewCompat.postOnAnimation(this, mSettleRunnable);
     }
 
     /**
@@ -291,147 +907,1670 @@ public class CollapseableLayout extends LinearLayout {
     }
 
     private void fling(float velocityY) {
-        // 500 代表每秒滑动500PX
-        if (Math.abs(velocityY) > 500) {
-            if (velocityY > 0) { // 下滑
-                animateOffsetToEnd();
-            } else { // 上滑
-                animateOffsetToStart();
-            }
-        } else {
-            if (velocityY > 0) {
-                animateOffsetTo(0.75f);
+        TraceCompat.beginSection(TRACE_FLING);
+        try {
+            cancelSettle();
+            abortFling();
+            if (Math.abs(velocityY) > mMinimumFlingVelocity) {
+                // 不限制边界,滑到边界时由scroll(int)截断,以便拿到到达边界那一刻的剩余速度
+                mLastFlingY = 0;
+                mFlingVelocity = velocityY;
+                mScroller.fling(0, 0, 0, (int) velocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                ViewCompat.postOnAnimation(this, mFlingRunnable);
             } else {
-                animateOffsetTo(0.25f);
+                if (velocityY > 0) {
+                    animateOffsetTo(0.75f, velocityY);
+                } else {
+                    animateOffsetTo(0.25f, velocityY);
+                }
             }
-        }
-        if (mOnFlingListener != null) {
-            mOnFlingListener.onFling(velocityY);
+            final Object[] listeners = mOnFlingListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                ((IOnFlingListener) listeners[i]).onFling(velocityY);
+            }
+        } finally {
+            TraceCompat.endSection();
         }
     }
 
-    private void scroll(int dy) {
-        int offset = dy;
-
-        if (dy < 0) { // 上推
-            // 推到顶部不在滑动
-            if (mContentView.getTop() <= mCollapseHeight) {
-                return;
-            }
-            int scrollAbleDistance = mContentView.getTop() - mCollapseHeight;
-            // 上推的剩余空间不够dy,能滑多少就滑多少。
-            if (scrollAbleDistance < Math.abs(dy)) {
-                offset = -scrollAbleDistance;
+    private final Runnable mFlingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            TraceCompat.beginSection(TRACE_FLING_FRAME);
+            final int startOffset = mOffsetModel.getOffset();
+            try {
+                if (!mScroller.computeScrollOffset()) {
+                    onFlingFinished();
+                    return;
+                }
+                mStats.flingFrameCount++;
+                final int y = mScroller.getCurrY();
+                final int dy = y - mLastFlingY;
+                mLastFlingY = y;
+                if (scroll(dy) != dy) {
+                    // 到达边界:上滑折叠到顶时把剩余速度交给孩子, 下滑展开到底直接结束
+                    final float remainVelocity = mScroller.getCurrVelocity();
+                    mScroller.abortAnimation();
+                    if (mFlingVelocity < 0) {
+                        flingRealScrollAbleView((int) remainVelocity);
+                    }
+                    return;
+                }
+                ViewCompat.postOnAnimation(CollapseableLayout.this, this);
+            } finally {
+                mStats.onFrameOffsetDelta(Math.abs(mOffsetModel.getOffset() - startOffset));
+                TraceCompat.endSection();
             }
         }
-        if (dy > 0) { // 下拉
-            // 下拉到顶部不在滑动
-            if (mHeaderView.getTop() >= 0) {
-                return;
-            }
+    };
 
-            int scrollAbleDistance = Math.abs(mHeaderView.getTop());
-            // 下拉的剩余空间不够DY
-            if (scrollAbleDistance < dy) {
-                offset = scrollAbleDistance;
-            }
+    private void abortFling() {
+        if (!mScroller.isFinished()) {
+            mScroller.abortAnimation();
         }
+        removeCallbacks(mFlingRunnable);
+    }
 
-        ViewCompat.offsetTopAndBottom(mHeaderView, offset);
-        ViewCompat.offsetTopAndBottom(mContentView, offset);
-
-        mCurOffset = mHeaderView.getTop();
-
-        if (mOnOffsetChangedListener != null) {
-            mOnOffsetChangedListener.onOffsetChanged(-mCurOffset, mHeaderView.getHeight() - mCollapseHeight);
+    /**
+     * 惯性滑动停在中间位置时,按照滑动方向自动伸缩到当前阶段的边界
+     */
+    private void onFlingFinished() {
+        if (mOffsetModel.isSettled()) {
+            return;
         }
+        animateToOffset(mOffsetModel.snapTargetInDirection(mFlingVelocity > 0), 0);
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    /**
+     * 把剩余的速度交给真正可以滑动的孩子继续滑动
+     *
+     * @param velocity 速度大小,方向为内容向上滚动
+     */
+    private void flingRealScrollAbleView(int velocity) {
+        if (velocity <= 0 || mRealScrollAbleView == null) {
+            return;
+        }
+        if (mRealScrollAbleView instanceof RecyclerView) {
+            ((RecyclerView) mRealScrollAbleView).fling(0, velocity);
+        } else if (mRealScrollAbleView instanceof NestedScrollView) {
+            ((NestedScrollView) mRealScrollAbleView).fling(velocity);
+        } else if (mRealScrollAbleView instanceof ListView
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            ((ListView) mRealScrollAbleView).fling(velocity);
+        }
+    }
 
-        int availableHeight = MeasureSpec.getSize(heightMeasureSpec);
-        if (availableHeight == 0) {
-            availableHeight = getHeight();
+    /**
+     * 拖动(包括嵌套滑动)的距离:完全展开以后继续下拉进入越界区域,上推时先收回越界区域再折叠。
+     * 惯性滑动和伸缩动画只调用scroll(int),不会进入越界区域
+     *
+     * @return 实际消耗的距离
+     */
+    private int drag(int dy) {
+        if (dy < 0) {
+            final int consumed = pullOverscroll(dy);
+            return consumed == dy ? consumed : consumed + scroll(dy - consumed);
+        }
+        final int consumed = scroll(dy);
+        if (consumed == dy || !mOverscroll.isEnabled() || mIsAnimRunning || !mOffsetModel.isExpanded()) {
+            return consumed;
         }
+        return consumed + pullOverscroll(dy - consumed);
+    }
 
-        final int height = availableHeight - mCollapseHeight;
-        final int contentViewHeightMeasureSpec = MeasureSpec.makeMeasureSpec(height,
-                mContentView.getLayoutParams().height == ViewGroup.LayoutParams.MATCH_PARENT
-                        ? MeasureSpec.EXACTLY
-                        : MeasureSpec.AT_MOST);
-        measureChild(mContentView, widthMeasureSpec, contentViewHeightMeasureSpec);
+    private int pullOverscroll(int dy) {
+        final int old = mOverscroll.getOffset();
+        final int consumed = mOverscroll.pullBy(dy);
+        if (mOverscroll.getOffset() != old) {
+            onOverscrollChanged();
+        }
+        return consumed;
     }
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        super.onLayout(changed, l, t, r, b);
+    private void setOverscroll(int overscroll) {
+        if (mOverscroll.setOffset(overscroll) != 0) {
+            onOverscrollChanged();
+        }
+    }
 
-        // fix bug: onLayout be called, we shoud reset child offset.
-        ViewCompat.offsetTopAndBottom(mHeaderView, mCurOffset);
-        ViewCompat.offsetTopAndBottom(mContentView, mCurOffset);
+    private void onOverscrollChanged() {
+        startMovingLayer();
+        applyOffset();
+        final int overscroll = mOverscroll.getOffset();
+        final Object[] listeners = mOnOverscrollListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            ((IOnOverscrollListener) listeners[i]).onOverscroll(overscroll, mRefreshThreshold);
+        }
     }
 
-    @Override
-    protected void onFinishInflate() {
-        final int CHILD_COUNT = getChildCount();
-        if (CHILD_COUNT != 2) {
-            throw new IllegalStateException("CollapseableLayout request only 2 child!");
-        } else {
-            if (mHeaderId != INVALID_VALUE && mHeaderView == null) {
-                mHeaderView = findViewById(mHeaderId);
-            }
+    /**
+     * 松手时收回越界区域:超过刷新阈值时进入刷新状态,回弹到阈值处停住
+     */
+    private void releaseOverscroll() {
+        final int overscroll = mOverscroll.getOffset();
+        if (overscroll == 0 || mSpringRunning) {
+            return;
+        }
+        final boolean refresh = mRefreshThreshold > 0 && !mRefreshing && overscroll >= mRefreshThreshold;
+        if (refresh) {
+            mRefreshing = true;
+        }
+        springOverscrollTo(mRefreshing && mRefreshThreshold > 0 ? mRefreshThreshold : 0);
+        if (refresh) {
+            final Object[] listeners = mOnOverscrollListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                ((IOnOverscrollListener) listeners[i]).onRefresh();
+            }
+        }
+    }
+
+    private void springOverscrollTo(int target) {
+        abortSpring();
+        mSpring.start(mOverscroll.getOffset(), target, 0, AnimationUtils.currentAnimationTimeMillis());
+        if (mSpring.isFinished()) {
+            return;
+        }
+        mSpringRunning = true;
+        ViewCompat.postOnAnimation(this, mSpringRunnable);
+    }
+
+    private final Runnable mSpringRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mSpring.computeOffset(AnimationUtils.currentAnimationTimeMillis())) {
+                mSpringRunning = false;
+                return;
+            }
+            mStats.animatorFrameCount++;
+            setOverscroll(mSpring.getCurrOffset());
+            if (mSpring.isFinished()) {
+                mSpringRunning = false;
+            } else {
+                ViewCompat.postOnAnimation(CollapseableLayout.this, this);
+            }
+        }
+    };
+
+    private void abortSpring() {
+        if (mSpringRunning) {
+            mSpringRunning = false;
+            mSpring.abort();
+            removeCallbacks(mSpringRunnable);
+        }
+    }
+
+    /**
+     * @return 实际滑动的距离
+     */
+    private int scroll(int dy) {
+        TraceCompat.beginSection(TRACE_SCROLL);
+        try {
+            mStats.onScroll(mIsBeingDragged || mNestedScrollInProgress);
+            return performScroll(dy);
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    private int performScroll(int dy) {
+        // 上推到顶部或者下拉到底部时,能滑多少就滑多少
+        final int offset = mOffsetModel.scrollBy(dy);
+        if (offset == 0) {
+            return 0;
+        }
+        startMovingLayer();
+        applyOffset();
+        notifyOffsetChanged();
+        return offset;
+    }
+
+    private boolean isMoving() {
+        return mIsBeingDragged || mIsAnimRunning || mNestedScrollInProgress || mSpringRunning
+                || !mScroller.isFinished();
+    }
+
+    /**
+     * 开始移动时把header(以及content)提升为硬件层,停止移动以后恢复
+     */
+    private void startMovingLayer() {
+        if (mMovingLayerActive || mMovingLayerFlags == 0 || !isHardwareAccelerated()) {
+            return;
+        }
+        mMovingLayerActive = true;
+        if ((mMovingLayerFlags & MOVING_LAYER_HEADER) != 0) {
+            for (View header : mHeaderViews) {
+                promoteLayer(header);
+            }
+        }
+        if ((mMovingLayerFlags & MOVING_LAYER_CONTENT) != 0) {
+            promoteLayer(mContentView);
+        }
+        postDelayed(mMovingLayerCheck, MOVING_LAYER_IDLE_DELAY);
+    }
+
+    private void promoteLayer(View child) {
+        // 外部已经设置了layerType的孩子保持不变
+        if (ViewCompat.getLayerType(child) == ViewCompat.LAYER_TYPE_NONE) {
+            ViewCompat.setLayerType(child, ViewCompat.LAYER_TYPE_HARDWARE, null);
+            mLayerViews[mLayerViewCount++] = child;
+        }
+    }
+
+    private final Runnable mMovingLayerCheck = new Runnable() {
+        @Override
+        public void run() {
+            if (isMoving()) {
+                postDelayed(this, MOVING_LAYER_IDLE_DELAY);
+            } else {
+                stopMovingLayer();
+            }
+        }
+    };
+
+    private void stopMovingLayer() {
+        if (!mMovingLayerActive) {
+            return;
+        }
+        mMovingLayerActive = false;
+        removeCallbacks(mMovingLayerCheck);
+        for (int i = 0; i < mLayerViewCount; i++) {
+            ViewCompat.setLayerType(mLayerViews[i], ViewCompat.LAYER_TYPE_NONE, null);
+            mLayerViews[i] = null;
+        }
+        mLayerViewCount = 0;
+    }
+
+    /**
+     * 把模型中的偏移量应用到每个header区块和content上:
+     * 某个区块所在的阶段折叠完成以后,该区块保留折叠高度停在顶部,后面的区块从它下面滑过
+     */
+    private void applyOffset() {
+        // 越界距离使所有孩子整体下移;拉伸模式下第一个区块原地拉伸,后面的孩子同样下移
+        final int overscroll = mOverscroll.getOffset();
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            // resize模式的区块只跟随前面的阶段移动,自身阶段的折叠距离通过裁剪体现
+            final int offset = mOffsetModel.getStageOffset(i) - getHeaderShrink(i)
+                    + (i == 0 && mOverscrollStretch ? 0 : overscroll);
+            applyChildOffset(mHeaderViews[i], offset - mHeaderOffsets[i], offset);
+            mHeaderOffsets[i] = offset;
+            applyResizeGravity(i);
+        }
+        if (mOverscrollStretch) {
+            applyHeaderStretch(overscroll);
+        }
+        final int offset = mOffsetModel.getOffset() + overscroll;
+        applyChildOffset(mContentView, offset - mContentOffset, offset);
+        mContentOffset = offset;
+        applyScrollEffects();
+        updateHeaderVisibility();
+    }
+
+    /**
+     * 以顶边为轴纵向拉伸第一个header区块,拉伸的高度等于越界距离
+     */
+    private void applyHeaderStretch(int overscroll) {
+        if (overscroll == mAppliedStretch) {
+            return;
+        }
+        mAppliedStretch = overscroll;
+        final View header = mHeaderViews[0];
+        final int height = header.getHeight();
+        if (height == 0) {
+            return;
+        }
+        ViewCompat.setPivotY(header, 0);
+        ViewCompat.setScaleY(header, 1f + (float) overscroll / height);
+    }
+
+    /**
+     * 第一个header区块拉伸出来的高度
+     */
+    private int getHeaderStretch(int index) {
+        return index == 0 && mOverscrollStretch ? mAppliedStretch : 0;
+    }
+
+    /**
+     * resize模式的header区块可见高度的收缩量(<= 0),scroll模式为0
+     */
+    private int getHeaderShrink(int index) {
+        final LayoutParams lp = (LayoutParams) mHeaderViews[index].getLayoutParams();
+        if (lp.collapseMode != LayoutParams.COLLAPSE_MODE_RESIZE) {
+            return 0;
+        }
+        final int moved = index == 0 ? 0 : mOffsetModel.getStageOffset(index - 1);
+        return mOffsetModel.getStageOffset(index) - moved;
+    }
+
+    private boolean hasResizeHeader() {
+        for (View header : mHeaderViews) {
+            if (((LayoutParams) header.getLayoutParams()).collapseMode == LayoutParams.COLLAPSE_MODE_RESIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按照对齐方式移动resize模式区块的孩子:top裁掉底部, center居中裁剪, bottom跟随可见区域的底部。
+     * 设置了ScrollEffect的孩子由效果决定位置
+     */
+    private void applyResizeGravity(int index) {
+        final int shrink = getHeaderShrink(index);
+        if (shrink == mHeaderShrinks[index]) {
+            return;
+        }
+        mHeaderShrinks[index] = shrink;
+        // 区块本身可能没有移动,裁剪区域的变化需要重绘父容器
+        invalidate();
+        // 单个View(例如ImageView)的区块只需要裁剪,没有需要对齐的孩子
+        final int gravity = ((LayoutParams) mHeaderViews[index].getLayoutParams()).resizeGravity;
+        if (gravity == LayoutParams.RESIZE_GRAVITY_TOP || !(mHeaderViews[index] instanceof ViewGroup)) {
+            return;
+        }
+        final float translationY = gravity == LayoutParams.RESIZE_GRAVITY_CENTER ? shrink / 2f : shrink;
+        final ViewGroup section = (ViewGroup) mHeaderViews[index];
+        for (int i = 0; i < section.getChildCount(); i++) {
+            final View child = section.getChildAt(i);
+            if (!hasScrollEffect(child)) {
+                ViewCompat.setTranslationY(child, translationY);
+            }
+        }
+    }
+
+    private boolean hasScrollEffect(View view) {
+        for (View effectView : mEffectViews) {
+            if (effectView == view) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 完全不可见的header区块设置为INVISIBLE:不再绘制,内部的invalidate也不会再触发重绘,
+     * 孩子会收到onVisibilityChanged,可以借此暂停动画。
+     * 同时检查裁剪区域,变化时重绘父容器
+     */
+    private void updateHeaderVisibility() {
+        if (getHeight() == 0) {
+            return;
+        }
+        boolean clipChanged = false;
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            final View header = mHeaderViews[i];
+            if (mHeaderHidden[i] && header.getVisibility() != INVISIBLE) {
+                // 隐藏期间外部修改了可见性,这个区块不再由CollapseableLayout恢复
+                mHeaderHidden[i] = false;
+            }
+            final boolean visible = computeHeaderClip(i, mHeaderClip);
+            final boolean clipped = visible && isClipped(header, mHeaderClip);
+            final int clipTop = clipped ? mHeaderClip.top : NO_CLIP;
+            final int clipBottom = clipped ? mHeaderClip.bottom : NO_CLIP;
+            if (clipTop != mHeaderClipTops[i] || clipBottom != mHeaderClipBottoms[i]) {
+                mHeaderClipTops[i] = clipTop;
+                mHeaderClipBottoms[i] = clipBottom;
+                clipChanged = true;
+            }
+            if (visible) {
+                inflateHeaderOnReveal(i);
+            }
+            if (!visible && header.getVisibility() == VISIBLE) {
+                header.setVisibility(INVISIBLE);
+                mHeaderHidden[i] = true;
+                mStats.culledDrawCount++;
+            } else if (visible) {
+                showCulledHeader(i);
+            }
+        }
+        if (clipChanged) {
+            invalidate();
+        }
+    }
+
+    /**
+     * 恢复被隐藏的区块:只有可见性仍然是隐藏时设置的INVISIBLE才恢复,期间被外部修改过的可见性保持不变
+     */
+    private void showCulledHeader(int index) {
+        if (!mHeaderHidden[index]) {
+            return;
+        }
+        mHeaderHidden[index] = false;
+        if (mHeaderViews[index].getVisibility() == INVISIBLE) {
+            mHeaderViews[index].setVisibility(VISIBLE);
+        }
+    }
+
+    /**
+     * 可见区域小于区块本身时才需要裁剪
+     */
+    private static boolean isClipped(View header, Rect clip) {
+        return clip.top != getVisualTop(header) || clip.height() != header.getHeight();
+    }
+
+    /**
+     * 计算header区块的裁剪区域:只扣除被绘制在它之上的不透明区块和content遮住的部分。
+     * 超出父容器的部分本来就会被父容器裁掉,不计入裁剪区域,否则部分移出顶部的区块每一帧都要重绘父容器
+     *
+     * @return false: 完全不可见(被遮住或者完全移出父容器)
+     */
+    private boolean computeHeaderClip(int index, Rect outRect) {
+        final View header = mHeaderViews[index];
+        final int left = header.getLeft();
+        final int right = header.getRight();
+        int top = getVisualTop(header);
+        int bottom = getHeaderVisualBottom(index);
+        // 前面的区块折叠后停在顶部,后面的区块从它下面滑过
+        for (int i = 0; i < index && top < bottom; i++) {
+            final View above = mHeaderViews[i];
+            if (isCovering(above, left, right)) {
+                final int aboveTop = getVisualTop(above);
+                final int aboveBottom = getHeaderVisualBottom(i);
+                if (aboveTop <= top) {
+                    top = Math.max(top, aboveBottom);
+                } else if (aboveBottom >= bottom) {
+                    bottom = Math.min(bottom, aboveTop);
+                }
+            }
+        }
+        if (isCovering(mContentView, left, right)) {
+            final int contentTop = getVisualTop(mContentView);
+            if (contentTop <= top) {
+                top = Math.max(top, contentTop + mContentView.getHeight());
+            } else {
+                bottom = Math.min(bottom, contentTop);
+            }
+        }
+        outRect.set(left, top, right, bottom);
+        return Math.max(top, 0) < Math.min(bottom, getHeight());
+    }
+
+    private static int getVisualTop(View child) {
+        return child.getTop() + (int) ViewCompat.getTranslationY(child);
+    }
+
+    private int getHeaderVisualBottom(int index) {
+        final View header = mHeaderViews[index];
+        return getVisualTop(header) + header.getHeight() + getHeaderShrink(index) + getHeaderStretch(index);
+    }
+
+    /**
+     * 只有不透明、横向完全覆盖的孩子才能遮住下面的区块
+     */
+    private static boolean isCovering(View child, int left, int right) {
+        return child.getVisibility() == VISIBLE && child.isOpaque()
+                && child.getLeft() <= left && child.getRight() >= right;
+    }
+
+    private void applyScrollEffects() {
+        final View[] views = mEffectViews;
+        final float[] values = mEffectValues;
+        for (int i = 0; i < views.length; i++) {
+            final View view = views[i];
+            final ScrollEffect effect = mEffects[i];
+            final int section = mEffectSections[i];
+            final float fraction = mOffsetModel.getStageFraction(section);
+
+            // resize模式的区块本身移动得更少,孩子需要补上收缩量,保证效果在屏幕上的位置不变
+            final float translationY = effect.computeTranslationY(mOffsetModel.getStageOffset(section))
+                    + getHeaderShrink(section);
+            if (translationY != values[i * 3]) {
+                ViewCompat.setTranslationY(view, translationY);
+                values[i * 3] = translationY;
+            }
+            if (effect.hasFade()) {
+                final float alpha = effect.computeAlpha(fraction);
+                if (alpha != values[i * 3 + 1]) {
+                    ViewCompat.setAlpha(view, alpha);
+                    values[i * 3 + 1] = alpha;
+                }
+            }
+            if (effect.hasScale()) {
+                final float scale = effect.computeScale(fraction);
+                if (scale != values[i * 3 + 2]) {
+                    ViewCompat.setScaleX(view, scale);
+                    ViewCompat.setScaleY(view, scale);
+                    values[i * 3 + 2] = scale;
+                }
+            }
+        }
+    }
+
+    /**
+     * 为header内部的控件设置滚动效果,effect为null时移除
+     *
+     * @param descendant header区块内部的任意控件(不能是header区块本身)
+     */
+    public void setScrollEffect(View descendant, ScrollEffect effect) {
+        removeScrollEffect(descendant);
+        if (effect == null) {
+            return;
+        }
+        View child = descendant;
+        while (child.getParent() != this) {
+            if (!(child.getParent() instanceof View)) {
+                throw new IllegalArgumentException("ScrollEffect target must be a descendant of header.");
+            }
+            child = (View) child.getParent();
+        }
+        final int section = indexOfChild(child);
+        if (child == descendant || child == mContentView) {
+            throw new IllegalArgumentException("ScrollEffect target must be a descendant of header.");
+        }
+        addScrollEffect(descendant, effect, section);
+        if (mOffsetModel.getStageCount() == mHeaderViews.length) {
+            applyScrollEffects();
+        }
+    }
+
+    private void addScrollEffect(View view, ScrollEffect effect, int section) {
+        final int count = mEffectViews.length;
+        mEffectViews = Arrays.copyOf(mEffectViews, count + 1);
+        mEffects = Arrays.copyOf(mEffects, count + 1);
+        mEffectSections = Arrays.copyOf(mEffectSections, count + 1);
+        mEffectValues = Arrays.copyOf(mEffectValues, (count + 1) * 3);
+        mEffectViews[count] = view;
+        mEffects[count] = effect;
+        mEffectSections[count] = section;
+        // NaN保证第一次一定会设置属性
+        Arrays.fill(mEffectValues, count * 3, count * 3 + 3, Float.NaN);
+    }
+
+    private void removeScrollEffect(View view) {
+        for (int i = 0; i < mEffectViews.length; i++) {
+            if (mEffectViews[i] != view) {
+                continue;
+            }
+            final int count = mEffectViews.length - 1;
+            final View[] views = new View[count];
+            final ScrollEffect[] effects = new ScrollEffect[count];
+            final int[] sections = new int[count];
+            final float[] values = new float[count * 3];
+            System.arraycopy(mEffectViews, 0, views, 0, i);
+            System.arraycopy(mEffectViews, i + 1, views, i, count - i);
+            System.arraycopy(mEffects, 0, effects, 0, i);
+            System.arraycopy(mEffects, i + 1, effects, i, count - i);
+            System.arraycopy(mEffectSections, 0, sections, 0, i);
+            System.arraycopy(mEffectSections, i + 1, sections, i, count - i);
+            System.arraycopy(mEffectValues, 0, values, 0, i * 3);
+            System.arraycopy(mEffectValues, (i + 1) * 3, values, i * 3, (count - i) * 3);
+            mEffectViews = views;
+            mEffects = effects;
+            mEffectSections = sections;
+            mEffectValues = values;
+            return;
+        }
+    }
+
+    private void applyChildOffset(View child, int delta, int offset) {
+        if (delta == 0) {
+            return;
+        }
+        if (mTranslationMode) {
+            ViewCompat.setTranslationY(child, offset);
+        } else {
+            ViewCompat.offsetTopAndBottom(child, delta);
+        }
+    }
+
+    private void notifyOffsetChanged() {
+        if (mCoalesceOffsetDispatch) {
+            if (!mOffsetDispatchScheduled) {
+                mOffsetDispatchScheduled = true;
+                ViewCompat.postOnAnimation(this, mDispatchOffsetRunnable);
+            }
+        } else {
+            dispatchOffsetChanged();
+        }
+    }
+
+    private final Runnable mDispatchOffsetRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mOffsetDispatchScheduled = false;
+            dispatchOffsetChanged();
+        }
+    };
+
+    private void dispatchOffsetChanged() {
+        // 合并模式下,一帧内偏移量可能来回变化,最终没有变化则不再通知
+        final int curOffset = mOffsetModel.getOffset();
+        if (mCoalesceOffsetDispatch && mLastDispatchedOffset == curOffset) {
+            return;
+        }
+        mLastDispatchedOffset = curOffset;
+
+        TraceCompat.beginSection(TRACE_DISPATCH);
+        final long start = System.nanoTime();
+        try {
+            final int verticalOffset = -curOffset;
+            final int maxOffset = mOffsetModel.getScrollRange();
+            Object[] listeners = mOnOffsetChangedListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                ((IOnOffsetChangedListener) listeners[i]).onOffsetChanged(verticalOffset, maxOffset);
+            }
+            listeners = mOnCollapseFractionListeners;
+            if (listeners.length > 0) {
+                final float fraction = mOffsetModel.getCollapseFraction();
+                for (int i = 0; i < listeners.length; i++) {
+                    ((IOnCollapseFractionListener) listeners[i]).onCollapseFractionChanged(verticalOffset, fraction);
+                }
+            }
+        } finally {
+            mStats.listenerTimeNanos += System.nanoTime() - start;
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return mNestedScrollMode && mCollapseEnable
+                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
+        cancelSettle();
+        abortFling();
+        abortSpring();
+        mNestedScrollInProgress = true;
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        // dy > 0: 手指上推, 先收回越界区域并折叠header, 剩余距离交给孩子
+        if (dy > 0) {
+            consumed[1] = -drag(-dy);
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        // dyUnconsumed < 0: 孩子已经滑到顶部, 剩余的下拉距离用来展开header, 完全展开以后进入越界区域
+        if (dyUnconsumed < 0) {
+            drag(-dyUnconsumed);
+        }
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        // 越界区域由松手后的回弹收回
+        if (mOverscroll.getOffset() > 0) {
+            return true;
+        }
+        // header处于中间状态并且可以自动伸缩时由父容器处理fling,否则交给孩子
+        if (mFlexible && !mOffsetModel.isSettled()) {
+            fling(-velocityY);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return false;
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target);
+        mNestedScrollInProgress = false;
+        mStats.onGestureEnd();
+        if (mOverscroll.getOffset() > 0) {
+            releaseOverscroll();
+        } else if (mFlexible && !mIsAnimRunning && mScroller.isFinished() && !mOffsetModel.isSettled()) {
+            animateOffsetTo(0.5f, 0);
+        }
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        TraceCompat.beginSection(TRACE_MEASURE);
+        mInLayout = true;
+        try {
+            mStats.measureCount++;
+            // 不再调用LinearLayout.onMeasure:它会先按剩余空间测量一次content,随后又要按折叠后的高度重新测量,
+            // content被测量两次。这里header按照LinearLayout的规则测量,content只按最终高度测量一次。
+            final int paddingVertical = getPaddingTop() + getPaddingBottom();
+            final int paddingHorizontal = getPaddingLeft() + getPaddingRight();
+            int totalHeight = 0;
+            int maxWidth = 0;
+            int childState = 0;
+            for (View header : mHeaderViews) {
+                if (header.getVisibility() == GONE) {
+                    continue;
+                }
+                final MarginLayoutParams lp = (MarginLayoutParams) header.getLayoutParams();
+                measureChildWithMargins(header, widthMeasureSpec, 0, heightMeasureSpec, totalHeight);
+                totalHeight += header.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+                maxWidth = Math.max(maxWidth, header.getMeasuredWidth() + lp.leftMargin + lp.rightMargin);
+                childState = combineMeasuredStates(childState, ViewCompat.getMeasuredState(header));
+            }
+
+            mLastHeightMeasureSpec = heightMeasureSpec;
+            final MarginLayoutParams contentLp = (MarginLayoutParams) mContentView.getLayoutParams();
+            final int contentViewWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec,
+                    paddingHorizontal + contentLp.leftMargin + contentLp.rightMargin, contentLp.width);
+            final int contentViewHeightMeasureSpec = makeContentHeightSpec(heightMeasureSpec);
+            recordContentLayoutParams(contentLp);
+            if (mContentView.getVisibility() != GONE) {
+                measureContent(contentViewWidthMeasureSpec, contentViewHeightMeasureSpec);
+                totalHeight += mContentView.getMeasuredHeight() + contentLp.topMargin + contentLp.bottomMargin;
+                maxWidth = Math.max(maxWidth,
+                        mContentView.getMeasuredWidth() + contentLp.leftMargin + contentLp.rightMargin);
+                childState = combineMeasuredStates(childState, ViewCompat.getMeasuredState(mContentView));
+            }
+
+            maxWidth = Math.max(maxWidth + paddingHorizontal, getSuggestedMinimumWidth());
+            totalHeight = Math.max(totalHeight + paddingVertical, getSuggestedMinimumHeight());
+            setMeasuredDimension(ViewCompat.resolveSizeAndState(maxWidth, widthMeasureSpec, childState),
+                    ViewCompat.resolveSizeAndState(totalHeight, heightMeasureSpec,
+                            childState << MEASURED_HEIGHT_STATE_SHIFT));
+        } finally {
+            mInLayout = false;
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        TraceCompat.beginSection(TRACE_LAYOUT);
+        mInLayout = true;
+        try {
+            mStats.layoutCount++;
+            super.onLayout(changed, l, t, r, b);
+
+            if (!mTranslationMode) {
+                // fix bug: onLayout be called, we shoud reset child offset.
+                // 重新布局以后孩子回到原始位置,需要重新应用偏移量;translationY不受布局影响
+                Arrays.fill(mHeaderOffsets, 0);
+                mContentOffset = 0;
+            }
+            // header高度变化时,折叠范围随之变化,超出范围的偏移量会被截断
+            int delta = mOffsetModel.setStages(computeStageRanges(), mStageSnap);
+            if (mHasPendingRestore) {
+                delta += restoreOffset();
+            }
+            applyOffset();
+            if (delta != 0) {
+                notifyOffsetChanged();
+            }
+        } finally {
+            mInLayout = false;
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (mContentLayoutBoundary && isContentOnlyLayoutRequest()) {
+            if (!mContentLayoutScheduled) {
+                mContentLayoutScheduled = true;
+                ViewCompat.postOnAnimation(this, mContentLayoutRunnable);
+            }
+            return;
+        }
+        super.requestLayout();
+    }
+
+    /**
+     * 只有content内部请求了重新布局,并且content的尺寸不依赖它的内容(宽高都是EXACTLY)。
+     * content自身的LayoutParams或者可见性变化时,上一次的测量规格和位置都已经失效
+     */
+    private boolean isContentOnlyLayoutRequest() {
+        if (mInLayout || mHeaderViews == null || isLayoutRequested() || !ViewCompat.isLaidOut(this)
+                || !mContentView.isLayoutRequested()
+                || MeasureSpec.getMode(mContentWidthSpec) != MeasureSpec.EXACTLY
+                || MeasureSpec.getMode(mContentHeightSpec) != MeasureSpec.EXACTLY
+                || isContentLayoutParamsChanged()) {
+            return false;
+        }
+        for (View header : mHeaderViews) {
+            if (header.isLayoutRequested()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recordContentLayoutParams(MarginLayoutParams lp) {
+        mMeasuredContentLp = lp;
+        mMeasuredContentWidth = lp.width;
+        mMeasuredContentHeight = lp.height;
+        mMeasuredContentMargins.set(lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin);
+        mMeasuredContentVisibility = mContentView.getVisibility();
+    }
+
+    private boolean isContentLayoutParamsChanged() {
+        final ViewGroup.LayoutParams params = mContentView.getLayoutParams();
+        if (params != mMeasuredContentLp || mContentView.getVisibility() != mMeasuredContentVisibility) {
+            return true;
+        }
+        final MarginLayoutParams lp = (MarginLayoutParams) params;
+        return lp.width != mMeasuredContentWidth || lp.height != mMeasuredContentHeight
+                || lp.leftMargin != mMeasuredContentMargins.left || lp.topMargin != mMeasuredContentMargins.top
+                || lp.rightMargin != mMeasuredContentMargins.right
+                || lp.bottomMargin != mMeasuredContentMargins.bottom;
+    }
+
+    private final Runnable mContentLayoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mContentLayoutScheduled = false;
+            // 期间发生了完整的布局,content已经处理过
+            if (isLayoutRequested() || !mContentView.isLayoutRequested()) {
+                return;
+            }
+            if (isContentLayoutParamsChanged()) {
+                // 期间直接修改了content的LayoutParams,交给完整的布局
+                CollapseableLayout.super.requestLayout();
+                return;
+            }
+            TraceCompat.beginSection(TRACE_CONTENT_LAYOUT);
+            try {
+                mStats.contentLayoutCount++;
+                measureContent(mContentWidthSpec, mContentHeightSpec);
+                // 在当前位置重新布局,offsetTopAndBottom应用的偏移量保持不变
+                final int left = mContentView.getLeft();
+                final int top = mContentView.getTop();
+                mContentView.layout(left, top,
+                        left + mContentView.getMeasuredWidth(), top + mContentView.getMeasuredHeight());
+            } finally {
+                TraceCompat.endSection();
+            }
+        }
+    };
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState ss = new SavedState(super.onSaveInstanceState());
+        final boolean animating = mIsAnimRunning;
+        ss.offset = animating ? mSettler.getFinalOffset() : mOffsetModel.getOffset();
+        if (animating ? ss.offset == 0 : mOffsetModel.isExpanded()) {
+            ss.state = SavedState.STATE_EXPANDED;
+        } else if (animating ? ss.offset == -mOffsetModel.getScrollRange() : mOffsetModel.isCollapsed()) {
+            ss.state = SavedState.STATE_COLLAPSED;
+        } else {
+            ss.state = SavedState.STATE_OFFSET;
+        }
+        return ss;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState ss = (SavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+        mPendingRestoreOffset = ss.offset;
+        mPendingRestoreState = ss.state;
+        mHasPendingRestore = true;
+        if (mHeaderViews != null && !ViewCompat.isLayoutRequested(this) && mOffsetModel.getScrollRange() > 0) {
+            // 已经布局完成,直接应用
+            if (restoreOffset() != 0) {
+                applyOffset();
+                notifyOffsetChanged();
+            }
+        }
+    }
+
+    /**
+     * 按照保存的状态设置偏移量:完全折叠和完全展开的状态以当前的折叠范围为准,
+     * 以免屏幕旋转导致header高度变化后停在中间位置
+     *
+     * @return 偏移量的变化
+     */
+    private int restoreOffset() {
+        mHasPendingRestore = false;
+        cancelSettle();
+        abortFling();
+        switch (mPendingRestoreState) {
+            case SavedState.STATE_EXPANDED:
+                return mOffsetModel.setOffset(0);
+            case SavedState.STATE_COLLAPSED:
+                return mOffsetModel.setOffset(-mOffsetModel.getScrollRange());
+            default:
+                return mOffsetModel.setOffset(mPendingRestoreOffset);
+        }
+    }
+
+    /**
+     * 测量content并记录规格,布局边界模式下单独重新布局content时沿用。
+     * 规格没有变化并且content没有请求重新布局时,View.measure本身就会跳过测量,这里不再重复判断。
+     */
+    private void measureContent(int widthMeasureSpec, int heightMeasureSpec) {
+        mContentView.measure(widthMeasureSpec, heightMeasureSpec);
+        mContentWidthSpec = widthMeasureSpec;
+        mContentHeightSpec = heightMeasureSpec;
+    }
+
+    /**
+     * content的高度为可用高度减去所有header区块折叠后保留的高度
+     */
+    private int makeContentHeightSpec(int heightMeasureSpec) {
+        int availableHeight = MeasureSpec.getSize(heightMeasureSpec);
+        if (availableHeight == 0) {
+            availableHeight = getHeight();
+        }
+        final int height = Math.max(0, availableHeight - getPinnedHeight());
+        final MarginLayoutParams lp = (MarginLayoutParams) mContentView.getLayoutParams();
+        final int spec = MeasureSpec.makeMeasureSpec(height,
+                lp.height == ViewGroup.LayoutParams.MATCH_PARENT
+                        ? MeasureSpec.EXACTLY
+                        : MeasureSpec.AT_MOST);
+        // 与measureChildWithMargins相同:扣除padding和margin,固定高度的content按EXACTLY测量
+        return getChildMeasureSpec(spec,
+                getPaddingTop() + getPaddingBottom() + lp.topMargin + lp.bottomMargin, lp.height);
+    }
+
+    /**
+     * 折叠后保留的高度变化时,只更新折叠范围并单独重新测量、布局content,不触发整个布局。
+     * 自身高度不固定时,自身的尺寸也会变化,只能重新布局。
+     */
+    private void onPinnedHeightChanged() {
+        if (mHeaderViews == null || !ViewCompat.isLaidOut(this) || isLayoutRequested() || mInLayout
+                || MeasureSpec.getMode(mLastHeightMeasureSpec) != MeasureSpec.EXACTLY) {
+            requestLayout();
+            return;
+        }
+        // 完全折叠的状态保持完全折叠
+        final boolean collapsed = mOffsetModel.isCollapsed() && !mOffsetModel.isExpanded();
+        int delta = mOffsetModel.setStages(computeStageRanges(), mStageSnap);
+        if (collapsed) {
+            delta += mOffsetModel.setOffset(-mOffsetModel.getScrollRange());
+        }
+        if (mContentView.getVisibility() != GONE) {
+            measureContent(mContentWidthSpec, makeContentHeightSpec(mLastHeightMeasureSpec));
+            final int left = mContentView.getLeft();
+            final int top = mContentView.getTop();
+            mContentView.layout(left, top,
+                    left + mContentView.getMeasuredWidth(), top + mContentView.getMeasuredHeight());
+        }
+        applyOffset();
+        if (delta != 0) {
+            notifyOffsetChanged();
+        }
+    }
+
+    /**
+     * 每个header区块可以折叠的距离 = 区块高度 - 折叠以后保留的高度
+     */
+    private int[] computeStageRanges() {
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            final View header = mHeaderViews[i];
+            mStageRanges[i] = header.getMeasuredHeight() - getCollapseHeight(i);
+            mStageSnap[i] = ((LayoutParams) header.getLayoutParams()).collapseSnap;
+        }
+        return mStageRanges;
+    }
+
+    private int getCollapseHeight(int headerIndex) {
+        final LayoutParams lp = (LayoutParams) mHeaderViews[headerIndex].getLayoutParams();
+        if (lp.collapseHeight != LayoutParams.COLLAPSE_HEIGHT_UNSET) {
+            return lp.collapseHeight;
+        }
+        return headerIndex == mHeaderViews.length - 1 ? mCollapseHeight + mTopInset : 0;
+    }
+
+    /**
+     * 完全折叠以后所有header区块保留的高度之和
+     */
+    private int getPinnedHeight() {
+        int height = 0;
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            height += getCollapseHeight(i);
+        }
+        return height;
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        // 前面的header区块折叠后停在顶部,需要绘制在后面的区块之上;content仍然最后绘制
+        return i < childCount - 1 ? childCount - 2 - i : i;
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        final int index = indexOfHeader(child);
+        if (index < 0 || mRenderSettleRunning) {
+            return super.drawChild(canvas, child, drawingTime);
+        }
+        if (!computeHeaderClip(index, mHeaderClip)) {
+            mStats.culledDrawCount++;
+            return false;
+        }
+        if (!isClipped(child, mHeaderClip)) {
+            return super.drawChild(canvas, child, drawingTime);
+        }
+        final int saveCount = canvas.save();
+        canvas.clipRect(mHeaderClip);
+        final boolean result = super.drawChild(canvas, child, drawingTime);
+        canvas.restoreToCount(saveCount);
+        return result;
+    }
+
+    private int indexOfHeader(View child) {
+        if (mHeaderViews == null) {
+            return -1;
+        }
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            if (mHeaderViews[i] == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        final int CHILD_COUNT = getChildCount();
+        if (CHILD_COUNT < 2) {
+            throw new IllegalStateException("CollapseableLayout request at least 2 child!");
+        } else {
             if (mContentId != INVALID_VALUE && mContentView == null) {
                 mContentView = findViewById(mContentId);
             }
             if (mScrollViewId != INVALID_VALUE && mRealScrollAbleView == null) {
                 mRealScrollAbleView = findViewById(mScrollViewId);
+                resolveScrollabilityProvider();
+            }
+        }
+
+        if (mHeaderId == INVALID_VALUE || findViewById(mHeaderId) == null || mContentView == null) {
+            throw new IllegalStateException("CollapseableLayout request header and content.");
+        }
+        if (indexOfChild(mContentView) != CHILD_COUNT - 1) {
+            throw new IllegalStateException("CollapseableLayout request content to be the last child!");
+        }
+
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            if (((LayoutParams) getChildAt(i).getLayoutParams()).weight > 0) {
+                throw new IllegalStateException("CollapseableLayout does not support layout_weight.");
+            }
+        }
+
+        final int headerCount = CHILD_COUNT - 1;
+        mHeaderViews = new View[headerCount];
+        for (int i = 0; i < headerCount; i++) {
+            mHeaderViews[i] = getChildAt(i);
+        }
+        mHeaderOffsets = new int[headerCount];
+        mStageRanges = new int[headerCount];
+        mStageSnap = new boolean[headerCount];
+        mHeaderHidden = new boolean[headerCount];
+        mHeaderClipTops = new int[headerCount];
+        mHeaderClipBottoms = new int[headerCount];
+        Arrays.fill(mHeaderClipTops, NO_CLIP);
+        Arrays.fill(mHeaderClipBottoms, NO_CLIP);
+        mHeaderShrinks = new int[headerCount];
+        mHeaderInflating = new boolean[headerCount];
+        mLayerViews = new View[CHILD_COUNT];
+        for (int i = 0; i < headerCount; i++) {
+            // XML中声明在header区块上的效果,作用于该区块的所有孩子
+            final ScrollEffect effect = ((LayoutParams) mHeaderViews[i].getLayoutParams()).effect;
+            if (effect != null && mHeaderViews[i] instanceof ViewGroup) {
+                final ViewGroup section = (ViewGroup) mHeaderViews[i];
+                for (int j = 0; j < section.getChildCount(); j++) {
+                    addScrollEffect(section.getChildAt(j), effect, i);
+                }
+            }
+        }
+        setChildrenDrawingOrderEnabled(headerCount > 1);
+        for (int i = 0; i < headerCount; i++) {
+            final LayoutParams lp = (LayoutParams) mHeaderViews[i].getLayoutParams();
+            if (lp.layout == 0) {
+                continue;
+            }
+            // 占位与真正的区块共用id,占位的状态不能保存,以免恢复到真正的区块上
+            mHeaderViews[i].setSaveEnabled(false);
+            if (lp.inflate == LayoutParams.INFLATE_ASYNC) {
+                inflateHeaderAsync(i);
+            }
+        }
+        super.onFinishInflate();
+    }
+
+    /**
+     * 在后台线程加载真正的header区块,完成以后在主线程替换占位
+     */
+    private void inflateHeaderAsync(final int index) {
+        if (mAsyncInflater == null) {
+            mAsyncInflater = new AsyncLayoutInflater(getContext());
+        }
+        mHeaderInflating[index] = true;
+        final View placeholder = mHeaderViews[index];
+        mAsyncInflater.inflate(((LayoutParams) placeholder.getLayoutParams()).layout, this,
+                new AsyncLayoutInflater.OnInflateFinishedListener() {
+                    @Override
+                    public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                        // 期间区块已经被替换过
+                        if (mHeaderViews[index] == placeholder) {
+                            swapInHeader(index, view);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 占位的区块第一次出现在屏幕上时加载真正的区块,放到下一帧之前执行,不阻塞本次滑动
+     */
+    private void inflateHeaderOnReveal(final int index) {
+        final LayoutParams lp = (LayoutParams) mHeaderViews[index].getLayoutParams();
+        if (lp.layout == 0 || lp.inflate != LayoutParams.INFLATE_REVEAL || mHeaderInflating[index]) {
+            return;
+        }
+        mHeaderInflating[index] = true;
+        final View placeholder = mHeaderViews[index];
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mHeaderViews[index] == placeholder) {
+                    swapInHeader(index, LayoutInflater.from(getContext())
+                            .inflate(lp.layout, CollapseableLayout.this, false));
+                }
+            }
+        });
+    }
+
+    /**
+     * 用真正的区块替换占位:沿用占位的LayoutParams,高度不变,content不会跳动,当前的偏移量保持不变
+     */
+    private void swapInHeader(int index, View header) {
+        final View placeholder = mHeaderViews[index];
+        final LayoutParams lp = (LayoutParams) placeholder.getLayoutParams();
+        lp.layout = 0;
+        mHeaderInflating[index] = false;
+        if (header.getId() == NO_ID) {
+            header.setId(placeholder.getId());
+        }
+        // 硬件层和效果记录的是占位及其孩子
+        stopMovingLayer();
+        for (int i = mEffectViews.length - 1; i >= 0; i--) {
+            if (mEffectSections[i] == index) {
+                removeScrollEffect(mEffectViews[i]);
+            }
+        }
+
+        mHeaderViews[index] = header;
+        // 新的区块还没有应用任何偏移量
+        mHeaderOffsets[index] = 0;
+        mHeaderHidden[index] = false;
+        mHeaderShrinks[index] = 0;
+        if (index == 0) {
+            mAppliedStretch = 0;
+        }
+        removeViewAt(index);
+        addView(header, index, lp);
+
+        if (lp.effect != null && header instanceof ViewGroup) {
+            final ViewGroup section = (ViewGroup) header;
+            for (int j = 0; j < section.getChildCount(); j++) {
+                addScrollEffect(section.getChildAt(j), lp.effect, index);
+            }
+        }
+        applyOffset();
+
+        if (mPendingHeaderState != null) {
+            header.restoreHierarchyState(mPendingHeaderState);
+            if (!hasHeaderPlaceholder()) {
+                mPendingHeaderState = null;
+            }
+        }
+        final Object[] listeners = mOnHeaderInflatedListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            ((IOnHeaderInflatedListener) listeners[i]).onHeaderInflated(index, header);
+        }
+    }
+
+    private boolean hasHeaderPlaceholder() {
+        for (View header : mHeaderViews) {
+            if (((LayoutParams) header.getLayoutParams()).layout != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        super.dispatchRestoreInstanceState(container);
+        // 真正的区块还没有加载,状态留到替换的时候恢复
+        if (mHeaderViews != null && hasHeaderPlaceholder()) {
+            mPendingHeaderState = container;
+        }
+    }
+
+    @Override
+    protected void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        super.dispatchSaveInstanceState(container);
+        // 还没有恢复到真正区块上的状态继续保留,不会因为再次保存而丢失
+        final SparseArray<Parcelable> pending = mPendingHeaderState;
+        if (pending != null && pending != container) {
+            for (int i = 0; i < pending.size(); i++) {
+                if (container.indexOfKey(pending.keyAt(i)) < 0) {
+                    container.put(pending.keyAt(i), pending.valueAt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * 自身的测量不计算孩子的总高度,LinearLayout按纵向gravity布局时依赖这个值,因此只支持top
+     */
+    @Override
+    public void setGravity(int gravity) {
+        checkVerticalGravity(gravity);
+        super.setGravity(gravity);
+    }
+
+    @Override
+    public void setVerticalGravity(int verticalGravity) {
+        checkVerticalGravity(verticalGravity);
+        super.setVerticalGravity(verticalGravity);
+    }
+
+    private static void checkVerticalGravity(int gravity) {
+        final int vertical = gravity & Gravity.VERTICAL_GRAVITY_MASK;
+        if (vertical != 0 && vertical != Gravity.TOP) {
+            throw new IllegalArgumentException("CollapseableLayout only supports top vertical gravity.");
+        }
+    }
+
+    /**
+     * 测量时不会为divider预留空间
+     */
+    @Override
+    public void setShowDividers(int showDividers) {
+        if (showDividers != SHOW_DIVIDER_NONE) {
+            throw new IllegalArgumentException("CollapseableLayout does not support dividers.");
+        }
+        super.setShowDividers(showDividers);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        if (p instanceof LayoutParams) {
+            return new LayoutParams((LayoutParams) p);
+        } else if (p instanceof MarginLayoutParams) {
+            return new LayoutParams((MarginLayoutParams) p);
+        }
+        return new LayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    /**
+     * 判断孩子是否可以继续下滑
+     */
+    private boolean canChildScrollDown() {
+        return mScrollabilityProvider != null && mScrollabilityProvider.canScrollDown(mRealScrollAbleView);
+    }
+
+    private void resolveScrollabilityProvider() {
+        final View scrollView = mRealScrollAbleView;
+        if (scrollView == null) {
+            mScrollabilityProvider = null;
+            return;
+        }
+        // 优先使用注册的判断逻辑,按照类继承关系由近到远查找
+        if (mScrollabilityProviders != null) {
+            for (Class<?> clazz = scrollView.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+                final ScrollabilityProvider provider = mScrollabilityProviders.get(clazz);
+                if (provider != null) {
+                    mScrollabilityProvider = provider;
+                    return;
+                }
+            }
+        }
+        if (scrollView instanceof RecyclerView) {
+            mScrollabilityProvider = ScrollabilityProvider.RECYCLER_VIEW;
+        } else if (scrollView instanceof AbsListView) {
+            mScrollabilityProvider = ScrollabilityProvider.ABS_LIST_VIEW;
+        } else if (scrollView instanceof NestedScrollView) {
+            mScrollabilityProvider = ScrollabilityProvider.NESTED_SCROLL_VIEW;
+        } else {
+            mScrollabilityProvider = ScrollabilityProvider.DEFAULT;
+        }
+    }
+
+    /**
+     * 为某一类滑动控件注册判断是否可以继续下滑的逻辑,对其子类同样生效
+     */
+    public void registerScrollabilityProvider(Class<? extends View> clazz, ScrollabilityProvider provider) {
+        if (mScrollabilityProviders == null) {
+            mScrollabilityProviders = new SimpleArrayMap<>();
+        }
+        if (provider == null) {
+            mScrollabilityProviders.remove(clazz);
+        } else {
+            mScrollabilityProviders.put(clazz, provider);
+        }
+        // 按页缓存的判断逻辑可能已经不再适用
+        if (mPageScrollabilityProviders != null) {
+            mPageScrollabilityProviders.clear();
+        }
+        resolveScrollabilityProvider();
+    }
+
+    /**
+     * 是否可以折叠
+     */
+    public void setCollapseEnable(boolean collapseEnable) {
+        this.mCollapseEnable = collapseEnable;
+    }
+
+    /**
+     * 是否灵活伸缩,松手自动伸缩
+     */
+    public void setFlexible(boolean isFlexible) {
+        this.mFlexible = isFlexible;
+    }
+
+    /**
+     * 是否开启嵌套滑动模式,需要孩子实现NestedScrollingChild(RecyclerView, NestedScrollView)
+     */
+    public void setNestedScrollMode(boolean nestedScrollMode) {
+        this.mNestedScrollMode = nestedScrollMode;
+    }
+
+    /**
+     * 是否通过translationY来移动header和content,切换时保持当前折叠偏移量不变。
+     * 触摸事件的分发会自动计算translationY,无需额外处理。
+     */
+    public void setTranslationMode(boolean translationMode) {
+        if (mTranslationMode == translationMode) {
+            return;
+        }
+        if (mHeaderViews == null) {
+            mTranslationMode = translationMode;
+            return;
+        }
+        cancelSettle();
+        // 先撤销旧模式下的偏移量,再按照新模式重新应用
+        for (int i = 0; i < mHeaderViews.length; i++) {
+            resetChildOffset(mHeaderViews[i], mHeaderOffsets[i]);
+            mHeaderOffsets[i] = 0;
+        }
+        resetChildOffset(mContentView, mContentOffset);
+        mContentOffset = 0;
+        mTranslationMode = translationMode;
+        applyOffset();
+    }
+
+    private void resetChildOffset(View child, int offset) {
+        if (mTranslationMode) {
+            ViewCompat.setTranslationY(child, 0);
+        } else {
+            ViewCompat.offsetTopAndBottom(child, -offset);
+        }
+    }
+
+    /**
+     * 伸缩动画是否交给ViewPropertyAnimator执行,只在translation模式下、且目标与当前位置处于同一个阶段时生效,
+     * 其他情况仍然逐帧计算
+     */
+    public void setRenderThreadSettle(boolean renderThreadSettle) {
+        if (!renderThreadSettle) {
+            cancelSettle();
+        }
+        mRenderThreadSettle = renderThreadSettle;
+    }
+
+    /**
+     * 拖动、惯性滑动和伸缩动画期间使用硬件层绘制的部分,停止移动以后恢复。
+     * 适合内容复杂但移动过程中本身不变化的header,header内部有渐隐、缩放等效果时每帧仍然需要重新绘制硬件层。
+     *
+     * @param flags {@link #MOVING_LAYER_HEADER}, {@link #MOVING_LAYER_CONTENT} 的组合, 0: 关闭
+     */
+    public void setMovingLayer(int flags) {
+        if (mMovingLayerFlags == flags) {
+            return;
+        }
+        stopMovingLayer();
+        mMovingLayerFlags = flags;
+    }
+
+    /**
+     * 布局边界模式:content的宽高都是固定的(match_parent)时,content内部的requestLayout不再引起整个布局的重新测量和布局,
+     * 只在下一帧单独重新布局content
+     */
+    public void setContentLayoutBoundary(boolean layoutBoundary) {
+        mContentLayoutBoundary = layoutBoundary;
+        if (!layoutBoundary && mContentLayoutScheduled) {
+            removeCallbacks(mContentLayoutRunnable);
+            mContentLayoutScheduled = false;
+            if (mContentView.isLayoutRequested()) {
+                super.requestLayout();
             }
         }
+    }
 
-        if (mHeaderView == null || mContentView == null) {
-            throw new IllegalStateException("CollapseableLayout request header and content.");
+    /**
+     * @param distance 完全展开以后继续下拉的越界距离上限, 0: 关闭越界
+     */
+    public void setOverscrollDistance(int distance) {
+        abortSpring();
+        final int old = mOverscroll.getOffset();
+        mOverscroll.setMaxDistance(distance);
+        if (mOverscroll.getOffset() != old && mHeaderViews != null) {
+            onOverscrollChanged();
         }
-        super.onFinishInflate();
     }
 
     /**
-     * 判断是否可以继续下滑仅支持ListView 和 RecyclerView
+     * @param resistance 刚进入越界区域时越界距离与手指距离的比例,越小阻力越大,取值 (0, 1]
      */
-    private boolean canChildScrollDown() {
-        if (mRealScrollAbleView != null) {
-            View child;
-            if (mRealScrollAbleView instanceof ListView) {
-                ListView listView = (ListView) mRealScrollAbleView;
-                child = listView.getChildAt(0);
-                return child != null && child.getTop() < 0;
+    public void setOverscrollResistance(float resistance) {
+        mOverscroll.setResistance(resistance);
+    }
+
+    /**
+     * @param stretch true: 越界时拉伸第一个header区块, false: 整个布局向下移动
+     */
+    public void setOverscrollStretch(boolean stretch) {
+        if (mOverscrollStretch == stretch) {
+            return;
+        }
+        mOverscrollStretch = stretch;
+        if (!stretch && mAppliedStretch != 0) {
+            mAppliedStretch = 0;
+            ViewCompat.setScaleY(mHeaderViews[0], 1f);
+        }
+        if (mHeaderViews != null) {
+            applyOffset();
+        }
+    }
+
+    /**
+     * @param threshold 松手时触发刷新的越界距离,需要小于越界距离上限, 0: 不触发刷新
+     */
+    public void setRefreshThreshold(int threshold) {
+        mRefreshThreshold = threshold;
+    }
+
+    /**
+     * 设置刷新状态:刷新期间越界区域停在刷新阈值处,结束后回弹收回
+     */
+    public void setRefreshing(boolean refreshing) {
+        if (mRefreshing == refreshing) {
+            return;
+        }
+        mRefreshing = refreshing;
+        // 拖动过程中由松手时处理;已经折叠时不展示越界区域
+        if (mRefreshThreshold <= 0 || mIsBeingDragged || mNestedScrollInProgress
+                || (refreshing && !mOffsetModel.isExpanded())) {
+            return;
+        }
+        springOverscrollTo(refreshing ? mRefreshThreshold : 0);
+    }
+
+    public boolean isRefreshing() {
+        return mRefreshing;
+    }
+
+    /**
+     * 修改最后一个header区块折叠后保留的高度(collapse_shrink_height),例如搜索框展开时
+     */
+    public void setCollapseHeight(int collapseHeight) {
+        setCollapseHeight(collapseHeight, false);
+    }
+
+    /**
+     * @param animate 是否以伸缩动画的时长过渡到新的高度
+     */
+    public void setCollapseHeight(int collapseHeight, boolean animate) {
+        if (mCollapseHeightAnimRunning) {
+            mCollapseHeightAnimRunning = false;
+            mCollapseHeightSettler.abort();
+            removeCallbacks(mCollapseHeightRunnable);
+        }
+        if (!animate || !ViewCompat.isLaidOut(this)) {
+            applyCollapseHeight(collapseHeight);
+            return;
+        }
+        mCollapseHeightSettler.start(mCollapseHeight, collapseHeight - mCollapseHeight, mSettleDuration,
+                AnimationUtils.currentAnimationTimeMillis());
+        mCollapseHeightAnimRunning = true;
+        ViewCompat.postOnAnimation(this, mCollapseHeightRunnable);
+    }
+
+    public int getCollapseHeight() {
+        return mCollapseHeight;
+    }
+
+    private final Runnable mCollapseHeightRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mCollapseHeightSettler.computeOffset(AnimationUtils.currentAnimationTimeMillis())) {
+                mCollapseHeightAnimRunning = false;
+                return;
             }
-            if (mRealScrollAbleView instanceof RecyclerView) {
-                RecyclerView recyclerView = (RecyclerView) mRealScrollAbleView;
-                child = recyclerView.getLayoutManager().getChildAt(0);
-                return child != null && child.getTop() < 0;
+            applyCollapseHeight(mCollapseHeightSettler.getCurrOffset());
+            if (mCollapseHeightSettler.isFinished()) {
+                mCollapseHeightAnimRunning = false;
+            } else {
+                ViewCompat.postOnAnimation(CollapseableLayout.this, this);
             }
-            if (mRealScrollAbleView instanceof NestedScrollView) {
-                NestedScrollView nestedScrollView = (NestedScrollView) mRealScrollAbleView;
-                return nestedScrollView.canScrollVertically(-1);
+        }
+    };
+
+    private void applyCollapseHeight(int collapseHeight) {
+        if (mCollapseHeight == collapseHeight) {
+            return;
+        }
+        mCollapseHeight = collapseHeight;
+        onPinnedHeightChanged();
+    }
+
+    /**
+     * 是否把顶部的系统窗口inset(状态栏)加到折叠后保留的高度上,
+     * 适用于header延伸到状态栏下面、折叠以后需要停在状态栏下方的情况
+     */
+    public void setApplyTopInset(boolean applyTopInset) {
+        if (mApplyTopInset == applyTopInset) {
+            return;
+        }
+        mApplyTopInset = applyTopInset;
+        ViewCompat.setOnApplyWindowInsetsListener(this, applyTopInset ? mInsetsListener : null);
+        if (applyTopInset) {
+            ViewCompat.requestApplyInsets(this);
+        } else if (mTopInset != 0) {
+            mTopInset = 0;
+            onPinnedHeightChanged();
+        }
+    }
+
+    private final OnApplyWindowInsetsListener mInsetsListener = new OnApplyWindowInsetsListener() {
+        @Override
+        public WindowInsetsCompat onApplyWindowInsets(View v, WindowInsetsCompat insets) {
+            final int topInset = insets.getSystemWindowInsetTop();
+            if (topInset != mTopInset) {
+                mTopInset = topInset;
+                onPinnedHeightChanged();
             }
+            return insets;
+        }
+    };
+
+    /**
+     * 偏移量回调是否合并为每帧(Choreographer)一次,回调中携带该帧最终的偏移量
+     */
+    public void setCoalesceOffsetDispatch(boolean coalesce) {
+        if (mCoalesceOffsetDispatch == coalesce) {
+            return;
+        }
+        mCoalesceOffsetDispatch = coalesce;
+        if (!coalesce && mOffsetDispatchScheduled) {
+            removeCallbacks(mDispatchOffsetRunnable);
+            mOffsetDispatchScheduled = false;
+            dispatchOffsetChanged();
         }
-        return false;
     }
 
     /**
-     * 是否可以折叠
+     * 把当前的统计数据复制到out中,不产生新对象
      */
-    public void setCollapseEnable(boolean collapseEnable) {
-        this.mCollapseEnable = collapseEnable;
+    public void snapshotStats(CollapseStats out) {
+        mStats.copyTo(out);
     }
 
     /**
-     * 是否灵活伸缩,松手自动伸缩
+     * 统计数据清零
      */
-    public void setFlexible(boolean isFlexible) {
-        this.mFlexible = isFlexible;
+    public void resetStats() {
+        mStats.reset();
+    }
+
+    /**
+     * 调试用:开始把收到的触摸事件记录到trace中,传入null停止记录
+     */
+    public void setTouchTrace(TouchTrace trace) {
+        mTouchTrace = trace;
+    }
+
+    /**
+     * 设置中间停靠点,松手后除了完全展开和完全折叠,也会停靠在这些位置
+     *
+     * @param fractions 折叠比例(0~1),例如0.5表示半展开
+     */
+    public void setSnapAnchors(float... fractions) {
+        mOffsetModel.setAnchors(fractions);
+    }
+
+    /**
+     * 触发惯性滑动的最小速度,低于该速度时松手按照位置伸缩
+     *
+     * @param velocity 单位px/s,需要自行按照density换算
+     */
+    public void setMinFlingVelocity(int velocity) {
+        mMinimumFlingVelocity = velocity;
+    }
+
+    /**
+     * 伸缩动画移动整个折叠范围所需的时间,实际时长按照剩余距离和松手速度缩短
+     */
+    public void setSettleDuration(int duration) {
+        mSettleDuration = duration;
     }
 
     /**
@@ -441,17 +2580,273 @@ public class CollapseableLayout extends LinearLayout {
         if (resId != INVALID_VALUE) {
             mScrollViewId = resId;
             mRealScrollAbleView = findViewById(resId);
+            resolveScrollabilityProvider();
+        }
+    }
+
+    /**
+     * 跟随ViewPager切换滑动目标:每一页中id为collapse_scroll的控件作为该页的滑动目标,只在该页内部查找并按页缓存。
+     * header由所有页面共用,切换页面时折叠偏移量保持不变,不会跳动,也不会重新布局。
+     *
+     * @param viewPager 为null时解除关联
+     */
+    public void setupWithViewPager(ViewPager viewPager) {
+        if (mViewPager == viewPager) {
+            return;
+        }
+        if (mViewPager != null) {
+            mViewPager.removeCallbacks(mResolvePageRunnable);
+            stopListenPageLayout();
+            mViewPager.removeOnPageChangeListener(mPageChangeListener);
+            mViewPager.removeOnAdapterChangeListener(mAdapterChangeListener);
+        }
+        setPagerAdapter(null);
+        clearPageScrollTargets();
+        mViewPager = viewPager;
+        if (viewPager == null) {
+            return;
+        }
+        viewPager.addOnPageChangeListener(mPageChangeListener);
+        viewPager.addOnAdapterChangeListener(mAdapterChangeListener);
+        setPagerAdapter(viewPager.getAdapter());
+        setCurrentPage(viewPager.getCurrentItem());
+    }
+
+    /**
+     * 手动指定某一页的滑动目标,适用于没有使用ViewPager的分页控件,配合 {@link #setCurrentPage(int)} 使用
+     */
+    public void setPageScrollTarget(int position, View scrollView) {
+        ensurePageCache();
+        mPageScrollViews.put(position, scrollView);
+        mPageScrollabilityProviders.remove(position);
+    }
+
+    /**
+     * 切换到某一页的滑动目标,优先使用缓存。该页没有滑动目标时不再使用上一页的目标
+     */
+    public void setCurrentPage(int position) {
+        ensurePageCache();
+        View target = mPageScrollViews.get(position);
+        ScrollabilityProvider provider = mPageScrollabilityProviders.get(position);
+        if (mViewPager != null && (target == null || !ViewCompat.isAttachedToWindow(target))) {
+            // 页面被销毁后重新创建,缓存失效
+            final View page = findPage(position);
+            target = page != null ? page.findViewById(mScrollViewId) : null;
+            provider = null;
+            // 非平滑切换到还没有创建的页面时不会经过SCROLL_STATE_IDLE,等ViewPager下一次布局以后再查找
+            mPendingPageResolve = page == null && mScrollViewId != INVALID_VALUE;
+            if (mPendingPageResolve) {
+                listenPageLayout();
+            }
+            if (target != null) {
+                mPageScrollViews.put(position, target);
+            } else {
+                mPageScrollViews.remove(position);
+            }
+            mPageScrollabilityProviders.remove(position);
+        }
+        if (target == null) {
+            mRealScrollAbleView = null;
+            mScrollabilityProvider = null;
+            return;
+        }
+        mRealScrollAbleView = target;
+        if (provider == null) {
+            resolveScrollabilityProvider();
+            mPageScrollabilityProviders.put(position, mScrollabilityProvider);
+        } else {
+            mScrollabilityProvider = provider;
+        }
+    }
+
+    /**
+     * 清空按页缓存的滑动目标,页面数据集变化时自动调用
+     */
+    public void clearPageScrollTargets() {
+        if (mPageScrollViews != null) {
+            mPageScrollViews.clear();
+            mPageScrollabilityProviders.clear();
+        }
+    }
+
+    private void ensurePageCache() {
+        if (mPageScrollViews == null) {
+            mPageScrollViews = new SparseArray<>();
+            mPageScrollabilityProviders = new SparseArray<>();
+        }
+    }
+
+    /**
+     * ViewPager按照页面的顺序横向排列页面,根据位置找到对应的页面,滑动目标只在该页内部查找。
+     * 页面位置与ViewPager的计算方式相同:每一页占据 getPageWidth(i) 倍的可用宽度,页面之间间隔pageMargin
+     *
+     * @return null: 页面还没有创建或者还没有布局
+     */
+    private View findPage(int position) {
+        if (mViewPager == null || mPagerAdapter == null || mScrollViewId == INVALID_VALUE
+                || position < 0 || position >= mPagerAdapter.getCount()) {
+            return null;
+        }
+        final ViewPager pager = mViewPager;
+        final int clientWidth = pager.getWidth() - pager.getPaddingLeft() - pager.getPaddingRight();
+        if (clientWidth <= 0) {
+            return null;
+        }
+        final float marginOffset = (float) pager.getPageMargin() / clientWidth;
+        float offset = 0;
+        for (int i = 0; i < position; i++) {
+            offset += mPagerAdapter.getPageWidth(i) + marginOffset;
+        }
+        final int pageLeft = pager.getPaddingLeft() + (int) (clientWidth * offset);
+        for (int i = 0; i < pager.getChildCount(); i++) {
+            final View page = pager.getChildAt(i);
+            // 浮点累加与ViewPager逐页计算的取整可能相差1px
+            if (((ViewPager.LayoutParams) page.getLayoutParams()).isDecor
+                    || Math.abs(page.getLeft() - pageLeft) > 1) {
+                continue;
+            }
+            return page;
+        }
+        return null;
+    }
+
+    private void setPagerAdapter(PagerAdapter adapter) {
+        if (mPagerAdapter != null) {
+            mPagerAdapter.unregisterDataSetObserver(mPagerDataObserver);
+        }
+        mPagerAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mPagerDataObserver);
+        }
+    }
+
+    private final ViewPager.OnPageChangeListener mPageChangeListener = new ViewPager.SimpleOnPageChangeListener() {
+        @Override
+        public void onPageSelected(int position) {
+            setCurrentPage(position);
+        }
+
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            if (state == ViewPager.SCROLL_STATE_IDLE && mPendingPageResolve) {
+                setCurrentPage(mViewPager.getCurrentItem());
+            }
+        }
+    };
+
+    private final ViewPager.OnAdapterChangeListener mAdapterChangeListener = new ViewPager.OnAdapterChangeListener() {
+        @Override
+        public void onAdapterChanged(ViewPager viewPager, PagerAdapter oldAdapter, PagerAdapter newAdapter) {
+            setPagerAdapter(newAdapter);
+            schedulePageResolve();
+        }
+    };
+
+    private final DataSetObserver mPagerDataObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            schedulePageResolve();
+        }
+    };
+
+    /**
+     * 页面位置可能发生变化,清空缓存,等ViewPager布局完成以后重新查找
+     */
+    private void schedulePageResolve() {
+        clearPageScrollTargets();
+        mPendingPageResolve = true;
+        if (mViewPager != null) {
+            mViewPager.removeCallbacks(mResolvePageRunnable);
+            mViewPager.post(mResolvePageRunnable);
+        }
+    }
+
+    private final Runnable mResolvePageRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mViewPager != null && mPendingPageResolve) {
+                setCurrentPage(mViewPager.getCurrentItem());
+            }
+        }
+    };
+
+    /**
+     * 只监听ViewPager的下一次布局,仍然找不到页面时由setCurrentPage重新监听
+     */
+    private void listenPageLayout() {
+        if (mPageLayoutListening) {
+            return;
+        }
+        mPageLayoutListening = true;
+        mViewPager.getViewTreeObserver().addOnGlobalLayoutListener(mPageLayoutListener);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void stopListenPageLayout() {
+        if (!mPageLayoutListening) {
+            return;
+        }
+        mPageLayoutListening = false;
+        final ViewTreeObserver observer = mViewPager.getViewTreeObserver();
+        if (!observer.isAlive()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(mPageLayoutListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(mPageLayoutListener);
         }
     }
 
+    private final ViewTreeObserver.OnGlobalLayoutListener mPageLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    stopListenPageLayout();
+                    if (mViewPager != null && mPendingPageResolve) {
+                        setCurrentPage(mViewPager.getCurrentItem());
+                    }
+                }
+            };
+
     public interface IOnOffsetChangedListener {
         void onOffsetChanged(int verticalOffset, int maxOffset);
     }
 
-    private IOnOffsetChangedListener mOnOffsetChangedListener;
+    /**
+     * 所有监听器数组采用写时复制,分发时直接遍历数组,不产生任何对象
+     */
+    private Object[] mOnOffsetChangedListeners = EMPTY_LISTENERS;
+    private Object[] mOnCollapseFractionListeners = EMPTY_LISTENERS;
+    private Object[] mOnFlingListeners = EMPTY_LISTENERS;
+    private Object[] mOnOverscrollListeners = EMPTY_LISTENERS;
+    private Object[] mOnHeaderInflatedListeners = EMPTY_LISTENERS;
+
+    private boolean mCoalesceOffsetDispatch;
+    private boolean mOffsetDispatchScheduled;
+    private int mLastDispatchedOffset;
 
     public void addOnOffsetChangedListener(IOnOffsetChangedListener listener) {
-        this.mOnOffsetChangedListener = listener;
+        mOnOffsetChangedListeners = appendListener(mOnOffsetChangedListeners, listener);
+    }
+
+    public void removeOnOffsetChangedListener(IOnOffsetChangedListener listener) {
+        mOnOffsetChangedListeners = removeListener(mOnOffsetChangedListeners, listener);
+    }
+
+    public interface IOnCollapseFractionListener {
+        /**
+         * @param fraction 折叠比例, 0: 完全展开, 1: 完全折叠
+         */
+        void onCollapseFractionChanged(int verticalOffset, float fraction);
+    }
+
+    public void addOnCollapseFractionListener(IOnCollapseFractionListener listener) {
+        mOnCollapseFractionListeners = appendListener(mOnCollapseFractionListeners, listener);
+    }
+
+    public void removeOnCollapseFractionListener(IOnCollapseFractionListener listener) {
+        mOnCollapseFractionListeners = removeListener(mOnCollapseFractionListeners, listener);
     }
 
     public interface IOnFlingListener {
@@ -461,9 +2856,217 @@ public class CollapseableLayout extends LinearLayout {
         void onFling(float velocityY);
     }
 
-    private IOnFlingListener mOnFlingListener;
-
     public void addOnFlingListener(IOnFlingListener onFlingListener) {
-        this.mOnFlingListener = onFlingListener;
+        mOnFlingListeners = appendListener(mOnFlingListeners, onFlingListener);
+    }
+
+    public void removeOnFlingListener(IOnFlingListener onFlingListener) {
+        mOnFlingListeners = removeListener(mOnFlingListeners, onFlingListener);
+    }
+
+    public interface IOnOverscrollListener {
+        /**
+         * @param overscroll 完全展开以后继续下拉的越界距离
+         * @param threshold  触发刷新的越界距离, 0: 没有设置
+         */
+        void onOverscroll(int overscroll, int threshold);
+
+        /**
+         * 松手时越界距离超过了刷新阈值,刷新完成以后调用setRefreshing(false)
+         */
+        void onRefresh();
+    }
+
+    public void addOnOverscrollListener(IOnOverscrollListener listener) {
+        mOnOverscrollListeners = appendListener(mOnOverscrollListeners, listener);
+    }
+
+    public void removeOnOverscrollListener(IOnOverscrollListener listener) {
+        mOnOverscrollListeners = removeListener(mOnOverscrollListeners, listener);
+    }
+
+    public interface IOnHeaderInflatedListener {
+        /**
+         * 延迟加载的header区块替换占位以后回调,可以在这里绑定数据和图片
+         *
+         * @param index  header区块的序号
+         * @param header 真正的header区块
+         */
+        void onHeaderInflated(int index, View header);
+    }
+
+    public void addOnHeaderInflatedListener(IOnHeaderInflatedListener listener) {
+        mOnHeaderInflatedListeners = appendListener(mOnHeaderInflatedListeners, listener);
+    }
+
+    public void removeOnHeaderInflatedListener(IOnHeaderInflatedListener listener) {
+        mOnHeaderInflatedListeners = removeListener(mOnHeaderInflatedListeners, listener);
+    }
+
+    private static Object[] appendListener(Object[] listeners, Object listener) {
+        if (listener == null) {
+            return listeners;
+        }
+        for (Object l : listeners) {
+            if (l == listener) {
+                return listeners;
+            }
+        }
+        final Object[] result = new Object[listeners.length + 1];
+        System.arraycopy(listeners, 0, result, 0, listeners.length);
+        result[listeners.length] = listener;
+        return result;
+    }
+
+    private static Object[] removeListener(Object[] listeners, Object listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    return EMPTY_LISTENERS;
+                }
+                final Object[] result = new Object[listeners.length - 1];
+                System.arraycopy(listeners, 0, result, 0, i);
+                System.arraycopy(listeners, i + 1, result, i, listeners.length - i - 1);
+                return result;
+            }
+        }
+        return listeners;
+    }
+
+    static class SavedState extends BaseSavedState {
+
+        static final int STATE_EXPANDED = 0;
+        static final int STATE_COLLAPSED = 1;
+        static final int STATE_OFFSET = 2;
+
+        int offset;
+        int state;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel source) {
+            super(source);
+            offset = source.readInt();
+            state = source.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(offset);
+            out.writeInt(state);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    public static class LayoutParams extends LinearLayout.LayoutParams {
+
+        public static final int COLLAPSE_HEIGHT_UNSET = -1;
+
+        /**
+         * header区块折叠以后保留的高度
+         */
+        public int collapseHeight = COLLAPSE_HEIGHT_UNSET;
+        /**
+         * 松手后是否自动伸缩到该阶段的边界
+         */
+        public boolean collapseSnap = true;
+        /**
+         * header区块的孩子随偏移量变化的效果,没有声明时为null
+         */
+        public ScrollEffect effect;
+
+        public static final int COLLAPSE_MODE_SCROLL = 0;
+        public static final int COLLAPSE_MODE_RESIZE = 1;
+
+        public static final int RESIZE_GRAVITY_TOP = 0;
+        public static final int RESIZE_GRAVITY_CENTER = 1;
+        public static final int RESIZE_GRAVITY_BOTTOM = 2;
+
+        /**
+         * header区块的折叠方式:整体上移,或者保持位置、通过裁剪缩小可见高度(只测量一次)
+         */
+        public int collapseMode = COLLAPSE_MODE_SCROLL;
+        /**
+         * resize模式下孩子的对齐方式
+         */
+        public int resizeGravity = RESIZE_GRAVITY_TOP;
+
+        public static final int INFLATE_ASYNC = 0;
+        public static final int INFLATE_REVEAL = 1;
+
+        /**
+         * 延迟加载的真正header区块的布局,0表示该孩子不是占位
+         */
+        public int layout;
+        /**
+         * 占位替换的时机
+         */
+        public int inflate = INFLATE_ASYNC;
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+            TypedArray arr = c.obtainStyledAttributes(attrs, R.styleable.CollapseableLayout_Layout);
+            collapseHeight = arr.getDimensionPixelOffset(R.styleable.CollapseableLayout_Layout_layout_collapse_height,
+                    COLLAPSE_HEIGHT_UNSET);
+            collapseSnap = arr.getBoolean(R.styleable.CollapseableLayout_Layout_layout_collapse_snap, true);
+            collapseMode = arr.getInt(R.styleable.CollapseableLayout_Layout_layout_collapse_mode, COLLAPSE_MODE_SCROLL);
+            resizeGravity = arr.getInt(R.styleable.CollapseableLayout_Layout_layout_collapse_resize_gravity,
+                    RESIZE_GRAVITY_TOP);
+            layout = arr.getResourceId(R.styleable.CollapseableLayout_Layout_layout_collapse_layout, 0);
+            inflate = arr.getInt(R.styleable.CollapseableLayout_Layout_layout_collapse_inflate, INFLATE_ASYNC);
+            if (arr.hasValue(R.styleable.CollapseableLayout_Layout_layout_collapse_parallax)
+                    || arr.hasValue(R.styleable.CollapseableLayout_Layout_layout_collapse_fade_end)
+                    || arr.hasValue(R.styleable.CollapseableLayout_Layout_layout_collapse_scale)
+                    || arr.hasValue(R.styleable.CollapseableLayout_Layout_layout_collapse_pin)) {
+                effect = new ScrollEffect()
+                        .setParallax(arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_parallax, 1f))
+                        .setFade(arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_fade_start, 0f),
+                                arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_fade_end, 0f))
+                        .setScale(arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_scale, 1f),
+                                arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_scale_start, 0f),
+                                arr.getFloat(R.styleable.CollapseableLayout_Layout_layout_collapse_scale_end, 1f))
+                        .setPin(arr.getBoolean(R.styleable.CollapseableLayout_Layout_layout_collapse_pin, false));
+            }
+            arr.recycle();
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(MarginLayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(LayoutParams source) {
+            super((MarginLayoutParams) source);
+            weight = source.weight;
+            gravity = source.gravity;
+            collapseHeight = source.collapseHeight;
+            collapseSnap = source.collapseSnap;
+            effect = source.effect;
+            collapseMode = source.collapseMode;
+            resizeGravity = source.resizeGravity;
+            layout = source.layout;
+            inflate = source.inflate;
+        }
     }
 }
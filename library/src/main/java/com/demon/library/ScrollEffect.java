@@ -0,0 +1,94 @@
+package com.demon.library;
+
+/**
+ * header内部控件随折叠偏移量变化的效果:视差、渐隐、缩放、吸顶。
+ * 由CollapseableLayout在应用偏移量的同时直接计算并设置属性,不需要通过IOnOffsetChangedListener实现。
+ * <p>
+ * 进度(fraction)为控件所在header区块自身的折叠进度, 0: 完全展开, 1: 该区块不再移动。
+ * <p>
+ * author: demon.zhang
+ */
+public final class ScrollEffect {
+
+    /**
+     * 视差因子, 1: 和header同步移动, 0.5: 移动速度为header的一半, 0: 停在原处
+     */
+    float parallax = 1f;
+
+    /**
+     * 渐隐:进度从fadeStart到fadeEnd,透明度从1变到0;fadeEnd <= fadeStart 表示不渐隐
+     */
+    float fadeStart;
+    float fadeEnd;
+
+    /**
+     * 缩放:进度从scaleStart到scaleEnd,缩放比例从1变到scale
+     */
+    float scale = 1f;
+    float scaleStart;
+    float scaleEnd = 1f;
+
+    /**
+     * 吸顶:控件停在屏幕上的原始位置,不随header移动,优先于视差
+     */
+    boolean pin;
+
+    public ScrollEffect setParallax(float parallax) {
+        this.parallax = parallax;
+        return this;
+    }
+
+    public ScrollEffect setFade(float fadeStart, float fadeEnd) {
+        this.fadeStart = fadeStart;
+        this.fadeEnd = fadeEnd;
+        return this;
+    }
+
+    public ScrollEffect setScale(float scale, float scaleStart, float scaleEnd) {
+        this.scale = scale;
+        this.scaleStart = scaleStart;
+        this.scaleEnd = scaleEnd;
+        return this;
+    }
+
+    public ScrollEffect setPin(boolean pin) {
+        this.pin = pin;
+        return this;
+    }
+
+    boolean hasFade() {
+        return fadeEnd > fadeStart;
+    }
+
+    boolean hasScale() {
+        return scale != 1f && scaleEnd > scaleStart;
+    }
+
+    /**
+     * @param sectionOffset 所在header区块的偏移量
+     */
+    float computeTranslationY(int sectionOffset) {
+        if (pin) {
+            return -sectionOffset;
+        }
+        return -sectionOffset * (1 - parallax);
+    }
+
+    float computeAlpha(float fraction) {
+        return 1 - progress(fraction, fadeStart, fadeEnd);
+    }
+
+    float computeScale(float fraction) {
+        return 1 + (scale - 1) * progress(fraction, scaleStart, scaleEnd);
+    }
+
+    private static float progress(float fraction, float start, float end) {
+        if (fraction <= start) {
+            return 0;
+        }
+        if (fraction >= end) {
+            return 1;
+        }
+        return (fraction - start) / (end - start);
+    }
+}
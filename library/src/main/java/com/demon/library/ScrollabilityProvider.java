@@ -0,0 +1,64 @@
+package com.demon.library;
+
+import android.support.v4.view.ViewCompat;
+import android.support.v4.widget.NestedScrollView;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.AbsListView;
+
+/**
+ * 判断真正可以滑动的孩子是否还可以继续下滑(内容顶部还有未显示的部分)。
+ * 通过 {@link CollapseableLayout#registerScrollabilityProvider(Class, ScrollabilityProvider)}
+ * 按View类型注册,CollapseableLayout在滑动目标变化时解析一次并缓存,不会在每个触摸事件中重复判断类型。
+ * <p>
+ * author: demon.zhang
+ */
+public interface ScrollabilityProvider {
+
+    /**
+     * @return true: 孩子可以继续下滑, CollapseableLayout不拦截下拉事件
+     */
+    boolean canScrollDown(View scrollView);
+
+    /**
+     * 通用实现,适用于正确实现了 computeVerticalScrollOffset 的控件,例如WebView以及自定义滑动控件
+     */
+    ScrollabilityProvider DEFAULT = new ScrollabilityProvider() {
+        @Override
+        public boolean canScrollDown(View scrollView) {
+            return ViewCompat.canScrollVertically(scrollView, -1);
+        }
+    };
+
+    /**
+     * 第一个可见条目不是第0条,或者第0条的顶部超出了列表的padding
+     */
+    ScrollabilityProvider ABS_LIST_VIEW = new ScrollabilityProvider() {
+        @Override
+        public boolean canScrollDown(View scrollView) {
+            final AbsListView listView = (AbsListView) scrollView;
+            if (listView.getChildCount() == 0) {
+                return false;
+            }
+            return listView.getFirstVisiblePosition() > 0
+                    || listView.getChildAt(0).getTop() < listView.getPaddingTop();
+        }
+    };
+
+    /**
+     * 由LayoutManager计算滚动偏移量,顶部padding和ItemDecoration都会被计算在内
+     */
+    ScrollabilityProvider RECYCLER_VIEW = new ScrollabilityProvider() {
+        @Override
+        public boolean canScrollDown(View scrollView) {
+            return ((RecyclerView) scrollView).computeVerticalScrollOffset() > 0;
+        }
+    };
+
+    ScrollabilityProvider NESTED_SCROLL_VIEW = new ScrollabilityProvider() {
+        @Override
+        public boolean canScrollDown(View scrollView) {
+            return scrollView.getScrollY() > 0;
+        }
+    };
+}
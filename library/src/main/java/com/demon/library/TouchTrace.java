@@ -0,0 +1,207 @@
+package com.demon.library;
+
+import android.view.MotionEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 调试工具:记录CollapseableLayout收到的触摸事件流,包括时间戳、每个手指的id和坐标以及历史采样点,
+ * 可以保存为紧凑的二进制文件,再在JVM上回放,用来复现拦截、滑动阈值、惯性滑动等依赖具体事件序列的问题。
+ * 回放时每个采样点还原为一个单独的事件,历史采样点作为ACTION_MOVE依次分发。
+ * <p>
+ * 通过 {@link CollapseableLayout#setTouchTrace(TouchTrace)} 开始记录,传入null停止。
+ * <p>
+ * 文件格式(大端): magic, version, 事件个数, 每个事件:
+ * action, 手指个数, 每个手指的id, 采样点个数, 每个采样点: 相对于第一个事件的时间(ms), 每个手指的x, y
+ * <p>
+ * author: demon.zhang
+ */
+public final class TouchTrace {
+
+    private static final int MAGIC = 0x434c5452;
+    private static final int VERSION = 1;
+
+    private final List<Event> mEvents = new ArrayList<>();
+    private long mStartTime = -1;
+
+    /**
+     * 一个触摸事件,最后一个采样点是事件本身,前面的是历史采样点
+     */
+    public static final class Event {
+        public final int action;
+        public final int[] pointerIds;
+        /**
+         * 每个采样点相对于第一个事件的时间
+         */
+        public final long[] sampleTimes;
+        /**
+         * 按 [采样点][手指][x, y] 排列的坐标
+         */
+        public final float[] coords;
+
+        public Event(int action, int[] pointerIds, long[] sampleTimes, float[] coords) {
+            this.action = action;
+            this.pointerIds = pointerIds;
+            this.sampleTimes = sampleTimes;
+            this.coords = coords;
+        }
+
+        public long getEventTime() {
+            return sampleTimes[sampleTimes.length - 1];
+        }
+
+        public int getSampleCount() {
+            return sampleTimes.length;
+        }
+
+        /**
+         * 还原事件本身(最后一个采样点)为MotionEvent,使用完以后需要调用recycle
+         *
+         * @param baseTime 第一个事件对应的时间,一般为SystemClock.uptimeMillis()
+         * @param downTime 本次手势按下的时间
+         */
+        public MotionEvent obtainMotionEvent(long baseTime, long downTime) {
+            return obtainMotionEvent(baseTime, downTime, sampleTimes.length - 1);
+        }
+
+        /**
+         * 把一个采样点还原为MotionEvent,历史采样点还原为单独的ACTION_MOVE事件,不使用addBatch。
+         * 只有id为0的单指事件使用 obtain(downTime, eventTime, action, x, y, metaState) 构造,在Robolectric中同样可以回放。
+         * 使用完以后需要调用recycle
+         */
+        public MotionEvent obtainMotionEvent(long baseTime, long downTime, int sample) {
+            final int eventAction = sample == sampleTimes.length - 1 ? action : MotionEvent.ACTION_MOVE;
+            final long eventTime = baseTime + sampleTimes[sample];
+            final int pointerCount = pointerIds.length;
+            if (pointerCount == 1 && pointerIds[0] == 0) {
+                final int base = sample * 2;
+                return MotionEvent.obtain(downTime, eventTime, eventAction, coords[base], coords[base + 1], 0);
+            }
+            final MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+            final MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[pointerCount];
+            for (int i = 0; i < pointerCount; i++) {
+                properties[i] = new MotionEvent.PointerProperties();
+                properties[i].id = pointerIds[i];
+                properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+                pointerCoords[i] = new MotionEvent.PointerCoords();
+                pointerCoords[i].pressure = 1f;
+                pointerCoords[i].size = 1f;
+            }
+            fillCoords(sample, pointerCoords);
+            return MotionEvent.obtain(downTime, eventTime, eventAction,
+                    pointerCount, properties, pointerCoords, 0, 0, 1f, 1f, 0, 0, 0, 0);
+        }
+
+        private void fillCoords(int sample, MotionEvent.PointerCoords[] out) {
+            final int base = sample * pointerIds.length * 2;
+            for (int i = 0; i < out.length; i++) {
+                out[i].x = coords[base + i * 2];
+                out[i].y = coords[base + i * 2 + 1];
+            }
+        }
+    }
+
+    /**
+     * 记录一个事件,坐标为CollapseableLayout自身的坐标系
+     */
+    public void record(MotionEvent ev) {
+        if (mStartTime < 0) {
+            mStartTime = ev.getEventTime();
+        }
+        final int pointerCount = ev.getPointerCount();
+        final int historySize = ev.getHistorySize();
+        final int sampleCount = historySize + 1;
+        final int[] pointerIds = new int[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            pointerIds[i] = ev.getPointerId(i);
+        }
+        final long[] sampleTimes = new long[sampleCount];
+        final float[] coords = new float[sampleCount * pointerCount * 2];
+        for (int sample = 0; sample < sampleCount; sample++) {
+            final boolean current = sample == historySize;
+            sampleTimes[sample] = (current ? ev.getEventTime() : ev.getHistoricalEventTime(sample)) - mStartTime;
+            final int base = sample * pointerCount * 2;
+            for (int i = 0; i < pointerCount; i++) {
+                coords[base + i * 2] = current ? ev.getX(i) : ev.getHistoricalX(i, sample);
+                coords[base + i * 2 + 1] = current ? ev.getY(i) : ev.getHistoricalY(i, sample);
+            }
+        }
+        mEvents.add(new Event(ev.getAction(), pointerIds, sampleTimes, coords));
+    }
+
+    /**
+     * 直接添加一个事件,用于在测试中构造手势
+     */
+    public void addEvent(Event event) {
+        mEvents.add(event);
+    }
+
+    public List<Event> getEvents() {
+        return mEvents;
+    }
+
+    public void clear() {
+        mEvents.clear();
+        mStartTime = -1;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(mEvents.size());
+        for (Event event : mEvents) {
+            data.writeInt(event.action);
+            data.writeByte(event.pointerIds.length);
+            for (int id : event.pointerIds) {
+                data.writeByte(id);
+            }
+            data.writeShort(event.sampleTimes.length);
+            int index = 0;
+            for (long time : event.sampleTimes) {
+                data.writeInt((int) time);
+                for (int i = 0; i < event.pointerIds.length * 2; i++) {
+                    data.writeFloat(event.coords[index++]);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    public static TouchTrace readFrom(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a touch trace.");
+        }
+        final int version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported touch trace version: " + version);
+        }
+        final TouchTrace trace = new TouchTrace();
+        final int eventCount = data.readInt();
+        for (int e = 0; e < eventCount; e++) {
+            final int action = data.readInt();
+            final int[] pointerIds = new int[data.readUnsignedByte()];
+            for (int i = 0; i < pointerIds.length; i++) {
+                pointerIds[i] = data.readUnsignedByte();
+            }
+            final long[] sampleTimes = new long[data.readUnsignedShort()];
+            final float[] coords = new float[sampleTimes.length * pointerIds.length * 2];
+            int index = 0;
+            for (int sample = 0; sample < sampleTimes.length; sample++) {
+                sampleTimes[sample] = data.readInt();
+                for (int i = 0; i < pointerIds.length * 2; i++) {
+                    coords[index++] = data.readFloat();
+                }
+            }
+            trace.mEvents.add(new Event(action, pointerIds, sampleTimes, coords));
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,56 @@
+package com.demon.library;
+
+import android.app.Activity;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class CollapseableLayoutLifecycleTest {
+
+    private static final int HEADER_HEIGHT = 600;
+
+    private TouchTraceReplayer mReplayer;
+
+    @Before
+    public void setUp() throws Exception {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        mReplayer = new TouchTraceReplayer(activity, 1080, 1920, HEADER_HEIGHT);
+    }
+
+    @Test
+    public void detachDuringSettle_jumpsToTargetAndStops() throws Exception {
+        final CollapseableLayout layout = mReplayer.getLayout();
+        final List<Integer> offsets = new ArrayList<>();
+        layout.addOnOffsetChangedListener(new CollapseableLayout.IOnOffsetChangedListener() {
+            @Override
+            public void onOffsetChanged(int verticalOffset, int maxOffset) {
+                offsets.add(verticalOffset);
+            }
+        });
+        layout.animateToStart();
+        // 空的事件流只用来推进时钟
+        mReplayer.replay(new TouchTrace(), 48);
+        assertTrue(offsets.get(offsets.size() - 1) < HEADER_HEIGHT);
+
+        ((ViewGroup) layout.getParent()).removeView(layout);
+        assertEquals(HEADER_HEIGHT, (int) offsets.get(offsets.size() - 1));
+
+        // 离开窗口以后不再有动画帧
+        final int count = offsets.size();
+        mReplayer.replay(new TouchTrace(), 1000);
+        assertEquals(count, offsets.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.demon.library;
+
+import android.app.Activity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.demon.library.TouchTraceReplayer.drag;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class CollapseableLayoutOverscrollTest {
+
+    private static final int HEADER_HEIGHT = 600;
+
+    private TouchTraceReplayer mReplayer;
+
+    @Before
+    public void setUp() throws Exception {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        mReplayer = new TouchTraceReplayer(activity, 1080, 1920, HEADER_HEIGHT);
+    }
+
+    @Test
+    public void pullDownWhenExpanded_overscrollsAndHoldsForRefresh() throws Exception {
+        final CollapseableLayout layout = mReplayer.getLayout();
+        layout.setOverscrollDistance(400);
+        layout.setRefreshThreshold(100);
+        final List<Integer> overscrolls = new ArrayList<>();
+        final int[] refreshCount = new int[1];
+        layout.addOnOverscrollListener(new CollapseableLayout.IOnOverscrollListener() {
+            @Override
+            public void onOverscroll(int overscroll, int threshold) {
+                overscrolls.add(overscroll);
+            }
+
+            @Override
+            public void onRefresh() {
+                refreshCount[0]++;
+            }
+        });
+
+        final TouchTraceReplayer.Result result = mReplayer.replay(drag(50, 8), 1000);
+        assertTrue(result.intercepted());
+        // 越界区域不改变折叠偏移量
+        assertTrue(result.offsets.isEmpty());
+        assertEquals(1, refreshCount[0]);
+        assertTrue(layout.isRefreshing());
+        assertEquals(100, (int) overscrolls.get(overscrolls.size() - 1));
+
+        layout.setRefreshing(false);
+        mReplayer.replay(new TouchTrace(), 1000);
+        assertEquals(0, (int) overscrolls.get(overscrolls.size() - 1));
+    }
+}
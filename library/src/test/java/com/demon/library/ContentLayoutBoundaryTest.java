@@ -0,0 +1,93 @@
+package com.demon.library;
+
+import android.app.Activity;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ContentLayoutBoundaryTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int HEADER_HEIGHT = 600;
+
+    private CollapseableLayout mLayout;
+    private FrameLayout mContent;
+    private View mContentChild;
+
+    @Before
+    public void setUp() throws Exception {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        final AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.collapse_header, "@android:id/text1")
+                .addAttribute(R.attr.collapse_content, "@android:id/text2")
+                .build();
+        mLayout = new CollapseableLayout(activity, attrs);
+        final View header = new View(activity);
+        header.setId(android.R.id.text1);
+        mLayout.addView(header, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEADER_HEIGHT));
+        mContent = new FrameLayout(activity);
+        mContent.setId(android.R.id.text2);
+        mContentChild = new View(activity);
+        mContent.addView(mContentChild, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 100));
+        mLayout.addView(mContent, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.onFinishInflate();
+        mLayout.setContentLayoutBoundary(true);
+        activity.setContentView(mLayout);
+        Robolectric.flushForegroundThreadScheduler();
+        layoutPass();
+        mLayout.resetStats();
+    }
+
+    @Test
+    public void contentInternalRequest_relaysOutOnlyContent() throws Exception {
+        mContentChild.getLayoutParams().height = 200;
+        mContentChild.requestLayout();
+        assertFalse(mLayout.isLayoutRequested());
+
+        advanceFrames();
+        assertEquals(200, mContentChild.getHeight());
+        final CollapseStats stats = new CollapseStats();
+        mLayout.snapshotStats(stats);
+        assertEquals(1, stats.getContentLayoutCount());
+    }
+
+    @Test
+    public void contentLayoutParamsChange_takesEffect() throws Exception {
+        final ViewGroup.LayoutParams lp = mContent.getLayoutParams();
+        lp.height = 500;
+        mContent.setLayoutParams(lp);
+
+        // 按照上一次的规格只重新布局content的话,新的高度会被忽略
+        advanceFrames();
+        layoutPass();
+        assertEquals(500, mContent.getHeight());
+        assertEquals(HEADER_HEIGHT, mContent.getTop());
+    }
+
+    private void layoutPass() {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static void advanceFrames() {
+        final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        scheduler.advanceTo(scheduler.getCurrentTime() + 32);
+    }
+}
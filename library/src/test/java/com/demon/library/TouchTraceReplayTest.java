@@ -0,0 +1,104 @@
+package com.demon.library;
+
+import android.app.Activity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static com.demon.library.TouchTraceReplayer.drag;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class TouchTraceReplayTest {
+
+    private static final int HEADER_HEIGHT = 600;
+
+    private TouchTraceReplayer mReplayer;
+
+    @Before
+    public void setUp() throws Exception {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        mReplayer = new TouchTraceReplayer(activity, 1080, 1920, HEADER_HEIGHT);
+    }
+
+    @Test
+    public void trace_survivesBinaryRoundTrip() throws Exception {
+        final TouchTrace trace = drag(40, 8);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+
+        final TouchTrace read = TouchTrace.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(trace.getEvents().size(), read.getEvents().size());
+        for (int i = 0; i < trace.getEvents().size(); i++) {
+            final TouchTrace.Event expected = trace.getEvents().get(i);
+            final TouchTrace.Event actual = read.getEvents().get(i);
+            assertEquals(expected.action, actual.action);
+            assertArrayEquals(expected.pointerIds, actual.pointerIds);
+            assertArrayEquals(expected.sampleTimes, actual.sampleTimes);
+            assertArrayEquals(expected.coords, actual.coords, 0f);
+        }
+    }
+
+    @Test
+    public void fastSwipeUp_interceptsAndFlingsToCollapsed() throws Exception {
+        final TouchTraceReplayer.Result result = mReplayer.replay(drag(-40, 8), 1000);
+
+        assertTrue(result.intercepted());
+        assertEquals(HEADER_HEIGHT, result.getFinalOffset());
+        assertEquals(1, result.stats.getGestureCount());
+    }
+
+    @Test
+    public void moveWithinTouchSlop_isNotIntercepted() throws Exception {
+        final TouchTraceReplayer.Result result = mReplayer.replay(drag(-1, 3), 1000);
+
+        assertFalse(result.intercepted());
+        assertTrue(result.offsets.isEmpty());
+    }
+
+    @Test
+    public void recordedTrace_replaysToSameOffset() throws Exception {
+        final TouchTrace recorded = new TouchTrace();
+        mReplayer.getLayout().setTouchTrace(recorded);
+        final TouchTraceReplayer.Result first = mReplayer.replay(drag(-20, 6), 0);
+        mReplayer.getLayout().setTouchTrace(null);
+
+        // 还原到完全展开以后回放记录下来的事件流
+        mReplayer.getLayout().animateToEnd();
+        mReplayer.replay(new TouchTrace(), 1000);
+        final TouchTraceReplayer.Result second = mReplayer.replay(recorded, 0);
+
+        assertEquals(drag(-20, 6).getEvents().size(), recorded.getEvents().size());
+        assertEquals(first.getFinalOffset(), second.getFinalOffset());
+        assertEquals(first.interceptDecisions, second.interceptDecisions);
+    }
+
+    @Test
+    public void touchDownDuringRenderSettle_dragContinuesFromCurrentPosition() throws Exception {
+        final CollapseableLayout layout = mReplayer.getLayout();
+        layout.setTranslationMode(true);
+        layout.setRenderThreadSettle(true);
+        layout.animateToStart();
+        // 属性动画进行到一半时按下并继续上推,手指不抬起
+        mReplayer.replay(new TouchTrace(), 48);
+        final TouchTraceReplayer.Result result = mReplayer.replay(drag(-10, 4, false), 1000);
+
+        assertFalse(result.offsets.isEmpty());
+        final int offset = result.getFinalOffset();
+        assertTrue(offset < HEADER_HEIGHT);
+        // 动画原定的结束时间过后,偏移量不会被动画的终点覆盖
+        assertTrue(result.offsetTimes.get(result.offsetTimes.size() - 1) <= 4 * 16 + 16);
+        assertEquals(-offset, (int) layout.getChildAt(1).getTranslationY());
+    }
+}
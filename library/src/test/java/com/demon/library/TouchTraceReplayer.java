@@ -0,0 +1,212 @@
+package com.demon.library;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.Robolectric;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowMotionEvent;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在JVM(Robolectric)上把TouchTrace回放到一个CollapseableLayout中,
+ * 记录偏移量的时间线、每个事件的拦截结果、动画帧数以及分发耗时
+ */
+final class TouchTraceReplayer {
+
+    private static final int FRAME_MILLIS = 16;
+
+    static final class Result {
+        /**
+         * 偏移量变化的时间(相对于第一个事件)和对应的折叠距离
+         */
+        final List<Long> offsetTimes = new ArrayList<>();
+        final List<Integer> offsets = new ArrayList<>();
+        /**
+         * 每次调用onInterceptTouchEvent的结果
+         */
+        final List<Boolean> interceptDecisions = new ArrayList<>();
+        final CollapseStats stats = new CollapseStats();
+        long totalDispatchNanos;
+        long maxDispatchNanos;
+
+        int getFinalOffset() {
+            return offsets.isEmpty() ? 0 : offsets.get(offsets.size() - 1);
+        }
+
+        boolean intercepted() {
+            return interceptDecisions.contains(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 记录拦截结果的CollapseableLayout
+     */
+    static final class RecordingLayout extends CollapseableLayout {
+
+        private Result mResult;
+
+        RecordingLayout(Activity activity, AttributeSet attrs) {
+            super(activity, attrs);
+        }
+
+        @Override
+        public boolean onInterceptTouchEvent(MotionEvent ev) {
+            final boolean intercept = super.onInterceptTouchEvent(ev);
+            if (mResult != null) {
+                mResult.interceptDecisions.add(intercept);
+            }
+            return intercept;
+        }
+    }
+
+    private final RecordingLayout mLayout;
+
+    /**
+     * 创建一个只有一个header区块和一个可点击content的布局,并完成测量和布局
+     */
+    TouchTraceReplayer(Activity activity, int width, int height, int headerHeight) {
+        final AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.collapse_header, "@android:id/text1")
+                .addAttribute(R.attr.collapse_content, "@android:id/text2")
+                .build();
+        mLayout = new RecordingLayout(activity, attrs);
+        final View header = new View(activity);
+        header.setId(android.R.id.text1);
+        mLayout.addView(header, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, headerHeight));
+        final View content = new View(activity);
+        content.setId(android.R.id.text2);
+        // content消费DOWN事件,后续事件需要经过onInterceptTouchEvent
+        content.setClickable(true);
+        mLayout.addView(content, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.onFinishInflate();
+        activity.setContentView(mLayout);
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, width, height);
+    }
+
+    CollapseableLayout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * 按照事件的时间戳依次分发,事件之间以及最后一个事件之后按帧推进主线程的时钟
+     *
+     * @param settleMillis 最后一个事件之后继续推进的时间,用于执行惯性滑动和伸缩动画
+     */
+    Result replay(TouchTrace trace, long settleMillis) {
+        final Result result = new Result();
+        final long baseTime = SystemClock.uptimeMillis();
+        final CollapseableLayout.IOnOffsetChangedListener listener = new CollapseableLayout.IOnOffsetChangedListener() {
+            @Override
+            public void onOffsetChanged(int verticalOffset, int maxOffset) {
+                result.offsetTimes.add(SystemClock.uptimeMillis() - baseTime);
+                result.offsets.add(verticalOffset);
+            }
+        };
+        mLayout.mResult = result;
+        mLayout.addOnOffsetChangedListener(listener);
+        mLayout.resetStats();
+
+        long downTime = baseTime;
+        long lastEventTime = 0;
+        for (TouchTrace.Event event : trace.getEvents()) {
+            if (event.action == MotionEvent.ACTION_DOWN) {
+                downTime = baseTime + event.getEventTime();
+            }
+            // 历史采样点作为单独的MOVE事件依次分发
+            for (int sample = 0; sample < event.getSampleCount(); sample++) {
+                advanceTo(baseTime + event.sampleTimes[sample]);
+                final MotionEvent ev = obtainMotionEvent(event, baseTime, downTime, sample);
+                final long start = System.nanoTime();
+                mLayout.dispatchTouchEvent(ev);
+                final long cost = System.nanoTime() - start;
+                ev.recycle();
+                result.totalDispatchNanos += cost;
+                result.maxDispatchNanos = Math.max(result.maxDispatchNanos, cost);
+            }
+            lastEventTime = event.getEventTime();
+        }
+        advanceTo(baseTime + lastEventTime + settleMillis);
+
+        mLayout.removeOnOffsetChangedListener(listener);
+        mLayout.mResult = null;
+        mLayout.snapshotStats(result.stats);
+        return result;
+    }
+
+    /**
+     * Robolectric只模拟了 obtain(downTime, eventTime, action, x, y, metaState),
+     * 多指事件在此基础上通过ShadowMotionEvent补上第二个手指,最多支持两个手指
+     */
+    private static MotionEvent obtainMotionEvent(TouchTrace.Event event, long baseTime, long downTime, int sample) {
+        final int pointerCount = event.pointerIds.length;
+        if (pointerCount == 1 && event.pointerIds[0] == 0) {
+            return event.obtainMotionEvent(baseTime, downTime, sample);
+        }
+        if (pointerCount > 2) {
+            throw new IllegalArgumentException("Replay supports at most 2 pointers: " + pointerCount);
+        }
+        final int action = sample == event.getSampleCount() - 1 ? event.action : MotionEvent.ACTION_MOVE;
+        final int base = sample * pointerCount * 2;
+        final MotionEvent ev = MotionEvent.obtain(downTime, baseTime + event.sampleTimes[sample], action,
+                event.coords[base], event.coords[base + 1], 0);
+        final ShadowMotionEvent shadow = Shadows.shadowOf(ev);
+        if (pointerCount == 2) {
+            shadow.setPointer2(event.coords[base + 2], event.coords[base + 3]);
+            shadow.setPointerIds(event.pointerIds[0], event.pointerIds[1]);
+        } else {
+            shadow.setPointerIds(event.pointerIds[0], event.pointerIds[0]);
+        }
+        shadow.setPointerIndex((action & MotionEvent.ACTION_POINTER_INDEX_MASK)
+                >> MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        return ev;
+    }
+
+    /**
+     * 构造一次单指拖动:按下以后每帧移动dy,最后一帧抬起
+     */
+    static TouchTrace drag(int dy, int moveCount) {
+        return drag(dy, moveCount, true);
+    }
+
+    /**
+     * @param release false: 最后一次移动以后手指不抬起
+     */
+    static TouchTrace drag(int dy, int moveCount, boolean release) {
+        final TouchTrace trace = new TouchTrace();
+        final float x = 540;
+        float y = 1200;
+        long time = 0;
+        trace.addEvent(event(MotionEvent.ACTION_DOWN, time, x, y));
+        for (int i = 0; i < moveCount; i++) {
+            time += 16;
+            y += dy;
+            trace.addEvent(event(MotionEvent.ACTION_MOVE, time, x, y));
+        }
+        if (release) {
+            trace.addEvent(event(MotionEvent.ACTION_UP, time + 8, x, y));
+        }
+        return trace;
+    }
+
+    private static TouchTrace.Event event(int action, long time, float x, float y) {
+        return new TouchTrace.Event(action, new int[]{0}, new long[]{time}, new float[]{x, y});
+    }
+
+    private static void advanceTo(long time) {
+        final Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        while (scheduler.getCurrentTime() < time) {
+            scheduler.advanceTo(Math.min(scheduler.getCurrentTime() + FRAME_MILLIS, time));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.demon.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ViewPagerScrollTargetTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int HEADER_HEIGHT = 300;
+    private static final int PAGE_COUNT = 5;
+    /**
+     * 只有这一页的列表已经滚动过,可以继续下滑
+     */
+    private static final int SCROLLED_PAGE = 3;
+
+    private final List<Boolean> mInterceptDecisions = new ArrayList<>();
+    private CollapseableLayout mLayout;
+    private ViewPager mPager;
+
+    @Before
+    public void setUp() throws Exception {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        final AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.collapse_header, "@android:id/text1")
+                .addAttribute(R.attr.collapse_content, "@android:id/text2")
+                .addAttribute(R.attr.collapse_scroll, "@android:id/list")
+                .build();
+        mLayout = new CollapseableLayout(activity, attrs) {
+            @Override
+            public boolean onInterceptTouchEvent(MotionEvent ev) {
+                final boolean intercept = super.onInterceptTouchEvent(ev);
+                mInterceptDecisions.add(intercept);
+                return intercept;
+            }
+        };
+        final View header = new View(activity);
+        header.setId(android.R.id.text1);
+        mLayout.addView(header, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEADER_HEIGHT));
+        mPager = new ViewPager(activity);
+        mPager.setId(android.R.id.text2);
+        mPager.setAdapter(new PageAdapter());
+        mLayout.addView(mPager, new CollapseableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.onFinishInflate();
+        activity.setContentView(mLayout);
+        layoutPass();
+        mLayout.setupWithViewPager(mPager);
+    }
+
+    @Test
+    public void nonSmoothSwitchToUncreatedPage_resolvesTargetAfterLayout() throws Exception {
+        mPager.setCurrentItem(SCROLLED_PAGE, false);
+        // 新页面在这一次布局中才有位置,之后不会再经过SCROLL_STATE_IDLE
+        layoutPass();
+
+        // 列表已经滚动过,下拉交给列表
+        dragDown();
+        assertFalse(mInterceptDecisions.isEmpty());
+        assertFalse(mInterceptDecisions.contains(Boolean.TRUE));
+    }
+
+    @Test
+    public void switchToUnscrolledPage_pullDownIsIntercepted() throws Exception {
+        mPager.setCurrentItem(1, false);
+        layoutPass();
+
+        dragDown();
+        assertEquals(Boolean.TRUE, mInterceptDecisions.get(mInterceptDecisions.size() - 1));
+    }
+
+    /**
+     * 与一次界面刷新相同:测量、布局,然后分发OnGlobalLayoutListener
+     */
+    private void layoutPass() {
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+        mLayout.getViewTreeObserver().dispatchOnGlobalLayout();
+    }
+
+    /**
+     * 在content上按下以后下拉超过touchSlop
+     */
+    private void dragDown() {
+        final long downTime = SystemClock.uptimeMillis();
+        final float x = WIDTH / 2;
+        final float y = HEADER_HEIGHT + 200;
+        dispatch(MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y, 0));
+        dispatch(MotionEvent.obtain(downTime, downTime + 16, MotionEvent.ACTION_MOVE, x, y + 100, 0));
+        dispatch(MotionEvent.obtain(downTime, downTime + 32, MotionEvent.ACTION_UP, x, y + 100, 0));
+    }
+
+    private void dispatch(MotionEvent ev) {
+        mLayout.dispatchTouchEvent(ev);
+        ev.recycle();
+    }
+
+    private static final class PageAdapter extends PagerAdapter {
+
+        @Override
+        public int getCount() {
+            return PAGE_COUNT;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            final FrameLayout page = new FrameLayout(container.getContext());
+            final View list = new ScrolledView(container.getContext(), position == SCROLLED_PAGE);
+            list.setId(android.R.id.list);
+            page.addView(list, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            container.addView(page);
+            return page;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+    }
+
+    /**
+     * 模拟滚动位置的列表:scrolled为true时可以继续下滑
+     */
+    private static final class ScrolledView extends View {
+
+        private final boolean mScrolled;
+
+        ScrolledView(Context context, boolean scrolled) {
+            super(context);
+            mScrolled = scrolled;
+        }
+
+        @Override
+        public boolean canScrollVertically(int direction) {
+            return direction < 0 && mScrolled;
+        }
+    }
+}